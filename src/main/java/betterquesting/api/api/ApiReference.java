@@ -11,6 +11,7 @@ import betterquesting.api.questing.rewards.IReward;
 import betterquesting.api.questing.tasks.ITask;
 import betterquesting.api.storage.ILifeDatabase;
 import betterquesting.api.storage.INameCache;
+import betterquesting.api.storage.IPlayerRegistry;
 import betterquesting.api.storage.IQuestSettings;
 import betterquesting.api2.client.gui.themes.IResourceReg;
 import betterquesting.api2.client.gui.themes.IThemeRegistry;
@@ -34,6 +35,7 @@ public class ApiReference // Note to self: Don't make these client side only. It
 	
 	public static final ApiKey<IQuestSettings> SETTINGS = new ApiKey<>();
 	public static final ApiKey<INameCache> NAME_CACHE = new ApiKey<>();
+	public static final ApiKey<IPlayerRegistry> PLAYER_REG = new ApiKey<>();
 	
 	public static final ApiKey<IThemeRegistry> THEME_REG = new ApiKey<>();
     public static final ApiKey<IResourceReg> RESOURCE_REG = new ApiKey<>();
@@ -26,6 +26,25 @@ public interface IQuest extends INBTSaveLoad<NBTTagCompound>, INBTProgress<NBTTa
 	NBTTagCompound getCompletionInfo(UUID uuid);
 	void setCompletionInfo(UUID uuid, @Nullable NBTTagCompound nbt);
 	
+	/**
+	 * Timestamp of the user's last completion or claim, or -1 if they have no completion record.
+	 * Cheaper than {@link #getCompletionInfo(UUID)} when only the time is needed. Saved timestamps can be negative too,
+	 * so use {@link #hasCompletionRecord(UUID)} to check whether there is a record
+	 */
+	default long getCompletionTime(UUID uuid)
+	{
+		NBTTagCompound info = getCompletionInfo(uuid);
+		return info == null ? -1L : info.getLong("timestamp");
+	}
+	
+	/**
+	 * Whether the user has a completion record, even if it has since been reset to unclaimed
+	 */
+	default boolean hasCompletionRecord(UUID uuid)
+	{
+		return getCompletionInfo(uuid) != null;
+	}
+	
 	void update(EntityPlayer player);
 	void detect(EntityPlayer player);
 	
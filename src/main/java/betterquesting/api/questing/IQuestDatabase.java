@@ -1,11 +1,31 @@
 package betterquesting.api.questing;
 
+import betterquesting.api2.cache.QuestGraph;
+import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.storage.IDatabase;
 import betterquesting.api2.storage.INBTPartial;
 import betterquesting.api2.storage.INBTProgress;
 import net.minecraft.nbt.NBTTagList;
 
+import java.util.Arrays;
+
 public interface IQuestDatabase extends IDatabase<IQuest>, INBTPartial<NBTTagList, Integer>, INBTProgress<NBTTagList>
 {
 	IQuest createNew(int id);
+	
+	/**
+	 * IDs of the quests that directly require the given quest, in ascending order
+	 */
+	default int[] getDependents(int questID)
+	{
+		return getEntries().stream().filter((entry) -> Arrays.binarySearch(entry.getValue().getRequirements(), questID) >= 0).mapToInt(DBEntry::getID).toArray();
+	}
+	
+	/**
+	 * Compiled prerequisite graph of the current quests. Implementations may cache this between edits
+	 */
+	default IQuestGraph getGraph()
+	{
+		return QuestGraph.compile(getEntries());
+	}
 }
@@ -0,0 +1,78 @@
+package betterquesting.api.questing;
+
+import betterquesting.api2.storage.DBEntry;
+
+import java.util.List;
+
+/**
+ * Immutable compiled view of the prerequisite graph between quests. Requirements pointing at quests outside the graph
+ * are dropped. All quest ID arrays returned are copies and safe to modify.
+ */
+public interface IQuestGraph
+{
+	int size();
+
+	boolean contains(int questID);
+
+	/**
+	 * All quest IDs in the graph in ascending order
+	 */
+	int[] getQuestIDs();
+
+	/**
+	 * Requirements of the quest that are part of this graph
+	 */
+	int[] getRequirements(int questID);
+
+	/**
+	 * Quests in this graph that directly require the given quest
+	 */
+	int[] getDependents(int questID);
+
+	/**
+	 * Whether the quest directly or indirectly requires the other one
+	 */
+	boolean requires(int questID, int reqID);
+
+	/**
+	 * Every quest ordered so its requirements come before it. Quests in a cycle are kept next to each other
+	 */
+	int[] getTopologicalOrder();
+
+	/**
+	 * Length of the longest requirement chain below the quest, or -1 if it isn't part of the graph.
+	 * Quests without requirements are at depth 0 and all quests in a cycle share the same depth
+	 */
+	int getDepth(int questID);
+
+	int getMaxDepth();
+
+	/**
+	 * Quests at the given depth in ascending ID order. Nothing at one depth can require another quest at the same depth
+	 * unless they are part of the same cycle
+	 */
+	int[] getLevel(int depth);
+
+	/**
+	 * Strongly connected components with more than one quest or a quest requiring itself
+	 */
+	int[][] getCycles();
+
+	boolean isInCycle(int questID);
+
+	/**
+	 * Graph induced by the given quests, keeping only requirements between them
+	 */
+	IQuestGraph getSubgraph(int... questIDs);
+
+	/**
+	 * Graph induced by the quests of a quest line
+	 */
+	default IQuestGraph getSubgraph(IQuestLine line)
+	{
+		List<DBEntry<IQuestLineEntry>> entries = line.getEntries();
+		int[] ids = new int[entries.size()];
+		for(int i = 0; i < ids.length; i++) ids[i] = entries.get(i).getID();
+		return getSubgraph(ids);
+	}
+}
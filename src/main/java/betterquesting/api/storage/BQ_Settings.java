@@ -21,6 +21,13 @@ public class BQ_Settings
 	public static float textWidthCorrection = 1.0f;
 	public static boolean questNotices = true;
 	public static boolean dirtyMode = true;
+	public static int cacheRefreshInterval = 1200;
+	public static int questCheckInterval = 200;
+	public static int tickBudget = 5;
+	public static boolean verifyTaskCounts = false;
+	public static boolean binaryProgress = false;
+	public static boolean lazyProgress = false;
+	public static int progressUnloadDelay = 30;
 	public static float scrollMultiplier = 0.1F;
 
 	public static float zoomSpeed = 1.25f;
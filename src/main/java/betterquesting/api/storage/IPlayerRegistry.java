@@ -0,0 +1,45 @@
+package betterquesting.api.storage;
+
+import betterquesting.api2.storage.INBTSaveLoad;
+import net.minecraft.nbt.NBTTagList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+/**
+ * Interns questing UUIDs and hands out a stable, dense int index for each one.<br>
+ * Indices start at 0, are never reused and persist with the world so progress stores can key players by int
+ * (primitive maps, bitsets, arrays) instead of hashing UUIDs. Indices are only meaningful on the side that assigned them.
+ */
+public interface IPlayerRegistry extends INBTSaveLoad<NBTTagList>
+{
+	/**
+	 * Index of the given user, assigning the next free one if they haven't been seen before
+	 */
+	int getIndex(@Nonnull UUID uuid);
+	
+	/**
+	 * Index of the given user or -1 if they have none yet
+	 */
+	int findIndex(@Nonnull UUID uuid);
+	
+	/**
+	 * User assigned to the given index or null if it's unassigned
+	 */
+	@Nullable
+	UUID getUUID(int index);
+	
+	/**
+	 * Shared instance of the given UUID. Registers the user if necessary
+	 */
+	@Nonnull
+	UUID intern(@Nonnull UUID uuid);
+	
+	/**
+	 * One past the highest index handed out so far
+	 */
+	int size();
+	
+	void reset();
+}
@@ -5,6 +5,8 @@ import betterquesting.api.placeholders.ItemPlaceholder;
 import betterquesting.api.placeholders.PlaceholderConverter;
 import betterquesting.api2.utils.BQThreadedIO;
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityList;
@@ -178,19 +180,7 @@ public class JsonHelper
 			} catch(Exception e)
 			{
 				QuestingAPI.getLogger().log(Level.ERROR, "An error occured while loading JSON from file:", e);
-				
-				int i = 0;
-				File bkup = new File(file.getParent(), "malformed_" + file.getName() + i + ".json");
-				
-				while(bkup.exists())
-				{
-					i++;
-					bkup = new File(file.getParent(), "malformed_" + file.getName() + i + ".json");
-				}
-				
-				QuestingAPI.getLogger().log(Level.ERROR, "Creating backup at: " + bkup.getAbsolutePath());
-				CopyPaste(file, bkup);
-				
+				backupMalformed(file);
 				return new JsonObject(); // Just a safety measure against NPEs
 			}
 		});
@@ -204,6 +194,83 @@ public class JsonHelper
 			return new JsonObject();
 		}
 	}
+	
+	/**
+	 * Same result as converting {@link #ReadFromFile(File)} with {@link NBTConverter#JSONtoNBT_Object(JsonObject, NBTTagCompound, boolean)}
+	 * but the file is streamed straight into NBT, so large files never exist as a JsonObject in memory
+	 */
+	public static NBTTagCompound ReadNBTFromFile(File file, boolean format)
+	{
+		Future<NBTTagCompound> task = BQThreadedIO.INSTANCE.enqueue(() -> readNBT(file, format));
+		
+		try
+		{
+			return task.get(); // Wait for other scheduled file ops to finish
+		} catch(Exception e)
+		{
+		    QuestingAPI.getLogger().error("Unable to read from file " + file, e);
+			return new NBTTagCompound();
+		}
+	}
+	
+	/**
+	 * Same as {@link #ReadNBTFromFile(File, boolean)} but queued on the disk IO pool without waiting, so many files can
+	 * be read at once
+	 */
+	public static Future<NBTTagCompound> ReadNBTFromFile2(File file, boolean format)
+	{
+		return BQThreadedIO.DISK_IO.enqueue(() -> readNBT(file, format));
+	}
+	
+	private static NBTTagCompound readNBT(File file, boolean format)
+	{
+		if(file == null || !file.exists())
+		{
+			return new NBTTagCompound();
+		}
+		
+		try(FileInputStream fis = new FileInputStream(file); InputStreamReader fr = new InputStreamReader(fis, StandardCharsets.UTF_8); JsonReader in = new JsonReader(fr))
+		{
+			in.setLenient(true); // Matches what Gson.fromJson() accepts
+			
+			try
+			{
+				in.peek();
+			} catch(EOFException e)
+			{
+				return new NBTTagCompound(); // Empty file
+			}
+			
+			NBTTagCompound tags = NBTConverter.JSONtoNBT_Object(in, new NBTTagCompound(), format);
+			if(in.peek() != JsonToken.END_DOCUMENT) throw new JsonIOException("JSON document was not fully consumed.");
+			return tags;
+		} catch(Exception e)
+		{
+			QuestingAPI.getLogger().log(Level.ERROR, "An error occured while loading JSON from file:", e);
+			backupMalformed(file);
+			return new NBTTagCompound();
+		}
+	}
+	
+	/**
+	 * Copies a file that failed to load to malformed_[name][i].[ext] next to it, so it isn't lost when it's next saved over
+	 */
+	public static void backupMalformed(File file)
+	{
+		int dot = file.getName().lastIndexOf('.');
+		String ext = dot < 0 ? ".json" : file.getName().substring(dot);
+		int i = 0;
+		File bkup = new File(file.getParent(), "malformed_" + file.getName() + i + ext);
+		
+		while(bkup.exists())
+		{
+			i++;
+			bkup = new File(file.getParent(), "malformed_" + file.getName() + i + ext);
+		}
+		
+		QuestingAPI.getLogger().log(Level.ERROR, "Creating backup at: " + bkup.getAbsolutePath());
+		CopyPaste(file, bkup);
+	}
 
 	public static void WriteToFile(File file, JsonObject jObj)
 	{
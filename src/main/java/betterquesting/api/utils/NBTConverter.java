@@ -4,7 +4,11 @@ import betterquesting.api.api.QuestingAPI;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import net.minecraft.nbt.*;
 import net.minecraft.nbt.NBTBase.NBTPrimitive;
@@ -20,6 +24,7 @@ import java.util.Set;
 
 public class NBTConverter
 {
+    private static final JsonParser PARSER = new JsonParser();
     private static Field f_tagList;
 	/**
 	 * Convert NBT tags to a JSON object
@@ -313,6 +318,139 @@ public class NBTConverter
 		return new NBTTagString();
 	}
 	
+	/**
+	 * Streams the next JSON object straight into the NBTTagCompound without building the JsonObject first. Gives the same
+	 * tags as {@link #JSONtoNBT_Object(JsonObject, NBTTagCompound, boolean)} does for the parsed object
+	 */
+	public static NBTTagCompound JSONtoNBT_Object(JsonReader in, NBTTagCompound tags, boolean format) throws IOException
+	{
+		in.beginObject();
+		
+		while(in.hasNext())
+		{
+			String key = in.nextName();
+			byte id = 0;
+			
+			if(format)
+			{
+				String[] s = key.split(":");
+				
+				try
+				{
+					id = Byte.parseByte(s[s.length - 1]);
+					key = key.substring(0, key.lastIndexOf(":" + id));
+				} catch(Exception e)
+				{
+					if(tags.hasKey(key))
+					{
+						QuestingAPI.getLogger().log(Level.WARN, "JSON/NBT formatting conflict on key '" + key + "'. Skipping...");
+						in.skipValue();
+						continue;
+					}
+				}
+			}
+			
+			tags.setTag(key, JSONtoNBT_Element(in, id, format));
+		}
+		
+		in.endObject();
+		return tags;
+	}
+	
+	/**
+	 * Streaming counterpart of {@link #JSONtoNBT_Element(JsonElement, byte, boolean)}. The common cases are read directly
+	 * and anything unusual (mismatched types, arrays, nulls) is parsed into a JsonElement and handed to the tree version
+	 */
+	private static NBTBase JSONtoNBT_Element(JsonReader in, byte id, boolean format) throws IOException
+	{
+		JsonToken token = in.peek();
+		byte tagID = id;
+		String number = null;
+		
+		if(id <= 0)
+		{
+			switch(token)
+			{
+				case NUMBER:
+					number = in.nextString();
+					tagID = (byte)(number.contains(".") ? 6 : 4);
+					break;
+				case BOOLEAN:
+					tagID = 1;
+					break;
+				case STRING:
+					tagID = 8;
+					break;
+				case BEGIN_ARRAY:
+					tagID = 9;
+					break;
+				case BEGIN_OBJECT:
+					tagID = 10;
+					break;
+				default:
+					tagID = 0;
+			}
+		}
+		
+		if(tagID == 1 && token == JsonToken.BOOLEAN)
+		{
+			return new NBTTagByte(in.nextBoolean() ? (byte)1 : (byte)0);
+		} else if(tagID >= 1 && tagID <= 6 && (token == JsonToken.NUMBER || token == JsonToken.STRING))
+		{
+			String value = number != null ? number : in.nextString();
+			
+			try
+			{
+				return instanceNumber(new LazilyParsedNumber(value), tagID);
+			} catch(Exception e)
+			{
+				// Let the tree version log it the same way
+				return JSONtoNBT_Element(token == JsonToken.NUMBER ? new JsonPrimitive(new LazilyParsedNumber(value)) : new JsonPrimitive(value), id, format);
+			}
+		} else if(tagID == 8 && (token == JsonToken.STRING || token == JsonToken.NUMBER))
+		{
+			return new NBTTagString(in.nextString());
+		} else if(tagID == 8 && token == JsonToken.BOOLEAN)
+		{
+			return new NBTTagString(Boolean.toString(in.nextBoolean()));
+		} else if(tagID == 10 && token == JsonToken.BEGIN_OBJECT)
+		{
+			return JSONtoNBT_Object(in, new NBTTagCompound(), format);
+		} else if(tagID == 9 && token == JsonToken.BEGIN_ARRAY)
+		{
+			NBTTagList tList = new NBTTagList();
+			in.beginArray();
+			while(in.hasNext()) tList.appendTag(JSONtoNBT_Element(in, (byte)0, format));
+			in.endArray();
+			return tList;
+		} else if(tagID == 9 && token == JsonToken.BEGIN_OBJECT)
+		{
+			NBTTagList tList = new NBTTagList();
+			in.beginObject();
+			
+			while(in.hasNext())
+			{
+				String[] s = in.nextName().split(":");
+				byte id2;
+				
+				try
+				{
+					id2 = Byte.parseByte(s[s.length - 1]);
+				} catch(Exception e)
+				{
+					id2 = 0;
+				}
+				
+				tList.appendTag(JSONtoNBT_Element(in, id2, format));
+			}
+			
+			in.endObject();
+			return tList;
+		}
+		
+		return JSONtoNBT_Element(PARSER.parse(in), id, format);
+	}
+	
 	/**
 	 * Pulls the raw list out of the NBTTagList
 	 */
@@ -5,10 +5,20 @@ import betterquesting.api.api.QuestingAPI;
 import betterquesting.api.enums.EnumQuestVisibility;
 import betterquesting.api.properties.NativeProps;
 import betterquesting.api.questing.IQuest;
+import betterquesting.api.questing.IQuestGraph;
 import betterquesting.api.storage.BQ_Settings;
-import betterquesting.api2.storage.DBEntry;
+import betterquesting.api2.storage.DBSnapshot;
+import betterquesting.handlers.EventHandler;
 import betterquesting.network.handlers.NetCacheSync;
+import betterquesting.questing.ProgressIndex;
 import betterquesting.questing.QuestDatabase;
+import betterquesting.questing.QuestInstance;
+import betterquesting.questing.QuestStateMemo;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
@@ -17,12 +27,19 @@ import net.minecraft.nbt.NBTTagList;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.world.World;
 import net.minecraftforge.common.IExtendedEntityProperties;
+import org.apache.logging.log4j.Level;
 
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
-import java.util.List;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class QuestCache implements IExtendedEntityProperties
 {
@@ -35,7 +52,7 @@ public class QuestCache implements IExtendedEntityProperties
     private final TreeSet<Integer> activeQuests = new TreeSet<>();
     
     // Quests and their scheduled time of being reset
-    private final TreeSet<QResetTime> resetSchedule = new TreeSet<>((o1, o2) -> o1.questID == o2.questID ? 0 : Long.compare(o1.time, o2.time));
+    private final TreeSet<QResetTime> resetSchedule = new TreeSet<>((o1, o2) -> o1.time != o2.time ? Long.compare(o1.time, o2.time) : Integer.compare(o1.questID, o2.questID));
     
     // Quests with pending auto claims (usually should be empty unless a condition needs to be met)
     private final TreeSet<Integer> autoClaims = new TreeSet<>();
@@ -43,9 +60,37 @@ public class QuestCache implements IExtendedEntityProperties
     // Quests that need to be sent to the client to update progression (NOT for edits. Handle that elsewhere)
     private final TreeSet<Integer> markedDirty = new TreeSet<>();
     
+    // Quests that had progress changes or became active since the last completion check
+    private final TIntHashSet pendingChecks = new TIntHashSet();
+    
+    // Changes waiting to be applied to player caches. Everything below is guarded by CHANGE_LOCK
+    private static final Object CHANGE_LOCK = new Object();
+    private static final int MAX_SHARED_CHANGES = 4096;
+    private static final HashMap<UUID, TIntHashSet> userChanges = new HashMap<>();
+    private static final Set<UUID> liveUsers = new HashSet<>(); // Users with a cache that has applied changes. Nobody else's are queued
+    private static final TIntArrayList sharedChanges = new TIntArrayList(); // Quests changed for everyone, in order
+    private static long sharedStart = 0; // Sequence number of the first entry in sharedChanges
+    private static long fullRefreshSeq = 0; // Caches that haven't seen this sequence number yet need a full rebuild
+    private static final Set<QuestCache> consumers = Collections.newSetFromMap(new WeakHashMap<>()); // Readers of sharedChanges
+    
+    private long seenSeq = -1; // Shared changes this cache has already applied. Starts behind so the first pass is a full rebuild
+    private boolean lastCanEdit = false;
+    
+    // Full rebuilds are evaluated here, bounded so a mass refresh can't take every core from the server
+    private static final ForkJoinPool REFRESH_POOL = new ForkJoinPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+    private Object pendingRebuild = null; // Token of the rebuild in flight, if any. Server thread only
+    
+    private EntityPlayerMP owner = null; // Server side only
+    
     @Override
     public void init(Entity entity, World world)
     {
+        if(entity instanceof EntityPlayerMP) owner = (EntityPlayerMP)entity;
+        
+        synchronized(CHANGE_LOCK)
+        {
+            consumers.add(this);
+        }
     }
     
     public synchronized int[] getActiveQuests()
@@ -80,10 +125,30 @@ public class QuestCache implements IExtendedEntityProperties
         return resetSchedule.toArray(new QResetTime[0]);
     }
     
-    public synchronized void markQuestDirty(int questID)
+    public void markQuestDirty(int questID)
     {
         if(questID < 0) return;
-        markedDirty.add(questID);
+        
+        synchronized(this)
+        {
+            markedDirty.add(questID);
+            pendingChecks.add(questID); // Progress changes are synced through here so they also queue a completion check
+        }
+        
+        QuestStateMemo.INSTANCE.invalidateQuest(questID);
+        if(owner != null) ProgressIndex.INSTANCE.addParty(QuestingAPI.getQuestingUUID(owner), questID);
+    }
+    
+    /**
+     * Takes the quests queued for a completion check, in ascending order
+     */
+    public synchronized int[] pollCompletionChecks()
+    {
+        if(pendingChecks.isEmpty()) return new int[0];
+        int[] ids = pendingChecks.toArray();
+        pendingChecks.clear();
+        Arrays.sort(ids);
+        return ids;
     }
     
     public synchronized void markQuestClean(int questID)
@@ -106,65 +171,485 @@ public class QuestCache implements IExtendedEntityProperties
         return aryMD;
     }
     
-    // TODO: Ensure this is thread safe because we're likely going to run this in the background
+    /**
+     * Queues a quest to be re-evaluated, along with its dependents, by the cache of the given user or by every cache if
+     * the user is null. Users without a live cache are skipped since their cache starts with a full rebuild. Safe to call
+     * from any thread
+     */
+    public static void notifyChanged(@Nullable UUID uuid, int questID)
+    {
+        if(questID < 0) return;
+        
+        synchronized(CHANGE_LOCK)
+        {
+            if(uuid != null)
+            {
+                if(liveUsers.contains(uuid)) userChanges.computeIfAbsent(uuid, (key) -> new TIntHashSet()).add(questID);
+            } else if(sharedChanges.isEmpty() || sharedChanges.get(sharedChanges.size() - 1) != questID) // Repeats add nothing new
+            {
+                if(sharedChanges.size() >= MAX_SHARED_CHANGES) pruneSharedChanges();
+                sharedChanges.add(questID);
+            }
+        }
+    }
+    
+    // Drops the shared changes every cache has already applied. If a cache is still too far behind to keep the list
+    // bounded, only that cache falls back to a full rebuild
+    private static void pruneSharedChanges()
+    {
+        long end = sharedStart + sharedChanges.size();
+        long keepFrom = end;
+        for(QuestCache cache : consumers)
+        {
+            if(cache.seenSeq >= sharedStart && cache.seenSeq < keepFrom) keepFrom = cache.seenSeq;
+        }
+        
+        keepFrom = Math.max(keepFrom, end - MAX_SHARED_CHANGES / 2);
+        sharedChanges.remove(0, (int)(keepFrom - sharedStart));
+        sharedStart = keepFrom;
+    }
+    
+    /**
+     * Drops the changes queued for a player who logged out or was unloaded, and stops tracking their caches
+     */
+    public static void releasePlayer(@Nonnull UUID uuid)
+    {
+        synchronized(CHANGE_LOCK)
+        {
+            userChanges.remove(uuid);
+            liveUsers.remove(uuid);
+            consumers.removeIf((cache) -> cache.owner != null && uuid.equals(QuestingAPI.getQuestingUUID(cache.owner)));
+        }
+    }
+    
+    /**
+     * Makes every cache perform a full rebuild the next time it applies changes
+     */
+    public static void notifyAllChanged()
+    {
+        synchronized(CHANGE_LOCK)
+        {
+            sharedStart += sharedChanges.size() + 1;
+            sharedChanges.clear();
+            userChanges.clear();
+            fullRefreshSeq = sharedStart;
+        }
+    }
+    
+    /**
+     * Makes only this cache perform a full rebuild the next time it applies changes
+     */
+    public void markFullRefresh()
+    {
+        synchronized(CHANGE_LOCK)
+        {
+            seenSeq = -1;
+        }
+    }
+    
+    /**
+     * Applies the changes queued since the last call. Rebuilds everything if a full refresh was requested or the player's
+     * edit permissions changed, otherwise only the affected quests are re-evaluated. Server side rebuilds are computed
+     * off thread and applied on a later tick. Server thread only
+     */
+    public void processChanges(@Nonnull EntityPlayer player)
+    {
+        if(pendingRebuild != null) return; // Changes stay queued until the rebuild in flight has been applied
+        
+        UUID uuid = QuestingAPI.getQuestingUUID(player);
+        boolean canEdit = QuestingAPI.getAPI(ApiReference.SETTINGS).canUserEdit(player);
+        boolean full;
+        int[] changed = null;
+        
+        synchronized(CHANGE_LOCK)
+        {
+            full = seenSeq < fullRefreshSeq || seenSeq < sharedStart || canEdit != lastCanEdit; // Behind what's left of the shared list
+            consumers.add(this);
+            liveUsers.add(uuid);
+            TIntHashSet pending = userChanges.remove(uuid);
+            
+            if(!full)
+            {
+                if(pending == null) pending = new TIntHashSet();
+                for(int i = (int)(seenSeq - sharedStart); i < sharedChanges.size(); i++) pending.add(sharedChanges.get(i));
+                changed = pending.toArray();
+            }
+            
+            seenSeq = sharedStart + sharedChanges.size();
+            lastCanEdit = canEdit;
+        }
+        
+        if(full)
+        {
+            if(player instanceof EntityPlayerMP)
+            {
+                rebuildAsync((EntityPlayerMP)player, canEdit);
+            } else
+            {
+                updateCache(player);
+            }
+        } else if(changed.length > 0)
+        {
+            updateDependents(player, changed);
+        }
+    }
+    
     // NOTE: Only run this when the quests completion and claim states change. Use markQuestDirty() for progression changes that need syncing
-    public synchronized void updateCache(@Nonnull EntityPlayer player)
+    public void updateCache(@Nonnull EntityPlayer player)
+    {
+        boolean canEdit = QuestingAPI.getAPI(ApiReference.SETTINGS).canUserEdit(player);
+        PlayerState state = new PlayerState(QuestingAPI.getQuestingUUID(player), player);
+        QuestSets sets = evaluate(state, canEdit, QuestingAPI.getAPI(ApiReference.QUEST_DB).snapshot()); // Stable view even if quests are edited mid refresh
+        applyRebuild(player, sets);
+    }
+    
+    /**
+     * Copies the player's completion records and task counts on the server thread, evaluates every quest against that copy
+     * on the refresh pool and applies the result back on the server thread. Changes queued meanwhile
+     * are left for the next {@link #processChanges(EntityPlayer)} after the rebuild lands, so nothing is lost when
+     * progress moves on while it runs
+     */
+    private void rebuildAsync(@Nonnull EntityPlayerMP player, boolean canEdit)
+    {
+        Object token = new Object();
+        pendingRebuild = token;
+        DBSnapshot<IQuest> snapshot = QuestingAPI.getAPI(ApiReference.QUEST_DB).snapshot();
+        PlayerState state = new CopiedState(QuestingAPI.getQuestingUUID(player), player, snapshot);
+        
+        REFRESH_POOL.execute(() -> {
+            QuestSets sets;
+            
+            try
+            {
+                sets = evaluate(state, canEdit, snapshot);
+            } catch(Exception e)
+            {
+                QuestingAPI.getLogger().log(Level.ERROR, "Background quest cache refresh failed. Retrying on the server thread", e);
+                sets = null;
+            }
+            
+            final QuestSets result = sets;
+            EventHandler.scheduleServerTask(() -> {
+                if(pendingRebuild != token) return null; // Superseded
+                pendingRebuild = null;
+                
+                if(result != null)
+                {
+                    applyRebuild(player, result);
+                } else
+                {
+                    updateCache(player);
+                }
+                return null;
+            });
+        });
+    }
+    
+    /**
+     * Evaluates every quest into new sets without touching this cache. Runs on any thread when given a {@link CopiedState}
+     */
+    private QuestSets evaluate(PlayerState state, boolean canEdit, DBSnapshot<IQuest> snapshot)
+    {
+        QuestSets sets = new QuestSets(new TreeSet<>(), new TreeSet<>(), new TreeSet<>(), new TreeSet<>());
+        long currentTime = System.currentTimeMillis();
+        TIntHashSet shown = computeShownQuests(state, canEdit);
+        snapshot.forEach((questID, quest) -> refreshQuest(questID, quest, state, canEdit, currentTime, sets, shown));
+        return sets;
+    }
+    
+    private synchronized void applyRebuild(EntityPlayer player, QuestSets sets)
     {
         UUID uuid = QuestingAPI.getQuestingUUID(player);
-        List<DBEntry<IQuest>> questDB = QuestingAPI.getAPI(ApiReference.QUEST_DB).getEntries();
         
-        List<Integer> tmpVisible = new ArrayList<>();
-        List<Integer> tmpActive = new ArrayList<>();
-        List<QResetTime> tmpReset = new ArrayList<>();
-        List<Integer> tmpAutoClaim = new ArrayList<>();
-
+        for(Integer questID : sets.active) if(!activeQuests.contains(questID)) pendingChecks.add(questID); // Newly active quests may already be completable
+        
+        visibleQuests.clear();
+        visibleQuests.addAll(sets.visible);
+        activeQuests.clear();
+        activeQuests.addAll(sets.active);
+        autoClaims.clear();
+        autoClaims.addAll(sets.autoClaims);
+        resetSchedule.clear();
+        resetSchedule.addAll(sets.resets);
+        
+        if(player instanceof EntityPlayerMP) // Resets are only ever fired server side. Drop any for quests that no longer have one (or no longer exist)
+        {
+            TIntHashSet keep = new TIntHashSet();
+            for(QResetTime entry : resetSchedule)
+            {
+                keep.add(entry.questID);
+                ResetScheduler.INSTANCE.schedule(uuid, entry.questID, entry.time);
+            }
+            ResetScheduler.INSTANCE.retainOnly(uuid, keep);
+            
+            NetCacheSync.sendSync((EntityPlayerMP)player);
+        }
+    }
+    
+    /**
+     * Re-evaluates only the given quests and everything that directly or indirectly requires them.
+     * Use in place of {@link #updateCache(EntityPlayer)} when the completion or claim state of a few known quests changed
+     */
+    public synchronized void updateDependents(@Nonnull EntityPlayer player, int... changedQuests)
+    {
+        if(changedQuests.length <= 0) return;
+        
+        TIntHashSet ids = new TIntHashSet(changedQuests);
+        ids.addAll(QuestDatabase.INSTANCE.getTransitiveDependents(changedQuests));
+        
+        UUID uuid = QuestingAPI.getQuestingUUID(player);
+        boolean canEdit = QuestingAPI.getAPI(ApiReference.SETTINGS).canUserEdit(player);
+        resetSchedule.removeIf((entry) -> ids.contains(entry.questID));
+        QuestSets sets = new QuestSets(visibleQuests, activeQuests, autoClaims, resetSchedule);
+        PlayerState state = new PlayerState(uuid, player);
+        
         long currentTime = System.currentTimeMillis();
-        for(DBEntry<IQuest> entry : questDB)
+        ids.forEach((questID) -> {
+            visibleQuests.remove(questID);
+            boolean wasActive = activeQuests.remove(questID);
+            autoClaims.remove(questID);
+            
+            IQuest quest = QuestDatabase.INSTANCE.getValue(questID);
+            long resetTime = quest == null ? -1 : refreshQuest(questID, quest, state, canEdit, currentTime, sets, null);
+            
+            if(player instanceof EntityPlayerMP) // Resets are only ever fired server side
+            {
+                if(resetTime >= 0)
+                {
+                    ResetScheduler.INSTANCE.schedule(uuid, questID, resetTime);
+                } else
+                {
+                    ResetScheduler.INSTANCE.cancel(uuid, questID);
+                }
+            }
+            
+            if(!wasActive && activeQuests.contains(questID)) pendingChecks.add(questID); // Newly active quests may already be completable
+            return true;
+        });
+        
+        if(player instanceof EntityPlayerMP) NetCacheSync.sendSync((EntityPlayerMP)player);
+    }
+    
+    /**
+     * Evaluates a single quest into the given sets
+     * @return The time the quest is due to reset or -1 if it isn't
+     */
+    private long refreshQuest(int questID, IQuest quest, PlayerState state, boolean canEdit, long currentTime, QuestSets out, @Nullable TIntHashSet shown)
+    {
+        long resetTime = -1;
+        
+        if(state.isUnlocked(questID, quest) || quest.getProperty(NativeProps.LOCKED_PROGRESS)) // Unlocked or actively processing progression data
         {
-            if(entry.getValue().isUnlocked(uuid) || entry.getValue().getProperty(NativeProps.LOCKED_PROGRESS)) // Unlocked or actively processing progression data
+            int repeat = quest.getProperty(NativeProps.REPEAT_TIME);
+            boolean hasRecord = state.hasRecord(questID, quest);
+            long completedAt = state.getCompletionTime(questID, quest);
+            
+            if((!hasRecord && quest.getTasks().size() <= 0) || state.canSubmit(questID, quest)) // Can be active without completion in the case of locked progress. Also account for taskless quests
             {
-                int repeat = entry.getValue().getProperty(NativeProps.REPEAT_TIME);
-                NBTTagCompound ue = entry.getValue().getCompletionInfo(uuid);
+                out.active.add(questID);
+            } else if(hasRecord) // These conditions only trigger after first completion
+            {
+                if(repeat >= 0 && state.hasClaimed(questID, quest))
+                {
+                    long period = repeat * 50L;
+                    long altTime = completedAt;
+                    if (altTime > currentTime) altTime = currentTime;
+                    if (repeat > 1 && !quest.getProperty(NativeProps.REPEAT_REL)) altTime -= (altTime % period); // Align to absolute period boundaries
+                    resetTime = altTime + period;
+                    out.resets.add(new QResetTime(questID, resetTime));
+                }
+                
+                if(!state.hasClaimed(questID, quest) && quest.getProperty(NativeProps.AUTO_CLAIM))
+                {
+                    out.autoClaims.add(questID);
+                }
+            }
+        }
+        
+        if(shown != null ? shown.contains(questID) : isQuestShown(questID, quest, state, canEdit))
+        {
+            out.visible.add(questID);
+        }
+        
+        return resetTime;
+    }
+    
+    // Evaluated quest states of a player. Either a cache's own sets or new ones being filled for a rebuild
+    private static final class QuestSets
+    {
+        private final TreeSet<Integer> visible;
+        private final TreeSet<Integer> active;
+        private final TreeSet<Integer> autoClaims;
+        private final TreeSet<QResetTime> resets;
+        
+        private QuestSets(TreeSet<Integer> visible, TreeSet<Integer> active, TreeSet<Integer> autoClaims, TreeSet<QResetTime> resets)
+        {
+            this.visible = visible;
+            this.active = active;
+            this.autoClaims = autoClaims;
+            this.resets = resets;
+        }
+    }
+    
+    // Progress of one player that quests are evaluated against, read live from the quests
+    private static class PlayerState
+    {
+        protected final UUID uuid;
+        private final EntityPlayer player;
+        protected final long stamp; // Memo clock read before any state was looked at
+        
+        private PlayerState(UUID uuid, @Nullable EntityPlayer player)
+        {
+            this.uuid = uuid;
+            this.player = player;
+            this.stamp = QuestStateMemo.INSTANCE.stamp();
+        }
+        
+        boolean isUnlocked(int questID, IQuest quest)
+        {
+            return quest.isUnlocked(uuid);
+        }
+        
+        boolean isComplete(int questID, IQuest quest)
+        {
+            return quest.isComplete(uuid);
+        }
+        
+        boolean hasClaimed(int questID, IQuest quest)
+        {
+            return quest.hasClaimed(uuid);
+        }
+        
+        boolean hasRecord(int questID, IQuest quest)
+        {
+            return quest.hasCompletionRecord(uuid);
+        }
+        
+        long getCompletionTime(int questID, IQuest quest)
+        {
+            return quest.getCompletionTime(uuid);
+        }
+        
+        boolean canSubmit(int questID, IQuest quest)
+        {
+            return quest.canSubmit(player);
+        }
+        
+        // Live results can be shared with the memo in both directions. Copies only write theirs, stamped from before the copy
+        boolean readsMemo()
+        {
+            return true;
+        }
+    }
+    
+    // Raw completion records and task counts copied on the server thread. Unlocks, submission and visibility are worked
+    // out from the copy on the refresh pool, so the refresh never reads records, task progress or the player off-thread
+    private static final class CopiedState extends PlayerState
+    {
+        private static final int RECORD = 1;
+        private static final int COMPLETE = 2;
+        private static final int CLAIMED = 4; // As reported by hasClaimed(), so rewardless and shared global claims count
+        private static final int OWN_CLAIM = 8; // Claim flag of the player's own record
+        private static final int OPAQUE = 16; // Not a QuestInstance. Its unlock and submit states were asked for directly
+        private static final int UNLOCKED = 32;
+        private static final int SUBMIT = 64;
+        
+        private final TIntIntHashMap flags = new TIntIntHashMap();
+        private final TIntLongHashMap completedAt = new TIntLongHashMap();
+        private final TIntIntHashMap doneTasks = new TIntIntHashMap(); // Only for completed repeatable quests awaiting a claim
+        
+        private CopiedState(UUID uuid, EntityPlayerMP player, DBSnapshot<IQuest> snapshot)
+        {
+            super(uuid, null);
+            
+            snapshot.forEach((questID, quest) -> {
+                int f = 0;
+                if(quest.isComplete(uuid)) f |= COMPLETE;
+                if(quest.hasClaimed(uuid)) f |= CLAIMED;
                 
-                if((ue == null && entry.getValue().getTasks().size() <= 0) || entry.getValue().canSubmit(player)) // Can be active without completion in the case of locked progress. Also account for taskless quests
+                if(quest.hasCompletionRecord(uuid))
                 {
-                    tmpActive.add(entry.getID());
-                } else if(ue != null) // These conditions only trigger after first completion
+                    f |= RECORD;
+                    completedAt.put(questID, quest.getCompletionTime(uuid));
+                }
+                
+                if(!(quest instanceof QuestInstance))
+                {
+                    f |= OPAQUE;
+                    if(quest.isUnlocked(uuid)) f |= UNLOCKED;
+                    if(((f & UNLOCKED) != 0 || quest.getProperty(NativeProps.LOCKED_PROGRESS)) && quest.canSubmit(player)) f |= SUBMIT;
+                } else if((f & RECORD) != 0)
                 {
-                    if(repeat >= 0 && entry.getValue().hasClaimed(uuid))
+                    if(((QuestInstance)quest).hasClaimedRecord(uuid))
                     {
-                        long altTime = ue.getLong("timestamp");
-                        if (altTime > currentTime) altTime = currentTime;
-                        if (repeat > 1 && !entry.getValue().getProperty(NativeProps.REPEAT_REL)) altTime -= (altTime % repeat);
-                        tmpReset.add(new QResetTime(entry.getID(), altTime + (repeat * 50)));
-                    }
-                    
-                    if(!entry.getValue().hasClaimed(uuid) && entry.getValue().getProperty(NativeProps.AUTO_CLAIM))
+                        f |= OWN_CLAIM;
+                    } else if(quest.getProperty(NativeProps.REPEAT_TIME) >= 0 && quest.getTasks().size() > 0)
                     {
-                        tmpAutoClaim.add(entry.getID());
+                        doneTasks.put(questID, ((QuestInstance)quest).getDoneTaskCount(uuid)); // Memoised, so only a first look scans the tasks
                     }
                 }
-            }
+                
+                flags.put(questID, f);
+            });
+        }
+        
+        // Mirrors QuestInstance.isUnlocked() against the copied completion states
+        @Override
+        boolean isUnlocked(int questID, IQuest quest)
+        {
+            int f = flags.get(questID);
+            if((f & OPAQUE) != 0) return (f & UNLOCKED) != 0;
             
-            if(isQuestShown(entry.getValue(), uuid, player))
-            {
-                tmpVisible.add(entry.getID());
-            }
+            int[] reqs = quest.getRequirements();
+            if(reqs.length <= 0) return true;
+            
+            int done = 0;
+            for(int reqID : reqs) if((flags.get(reqID) & COMPLETE) != 0) done++;
+            return quest.getProperty(NativeProps.LOGIC_QUEST).getResult(done, reqs.length);
         }
         
-        visibleQuests.clear();
-        visibleQuests.addAll(tmpVisible);
+        @Override
+        boolean isComplete(int questID, IQuest quest)
+        {
+            return (flags.get(questID) & COMPLETE) != 0;
+        }
         
-        activeQuests.clear();
-        activeQuests.addAll(tmpActive);
+        @Override
+        boolean hasClaimed(int questID, IQuest quest)
+        {
+            return (flags.get(questID) & CLAIMED) != 0;
+        }
         
-        resetSchedule.clear();
-        resetSchedule.addAll(tmpReset);
+        @Override
+        boolean hasRecord(int questID, IQuest quest)
+        {
+            return (flags.get(questID) & RECORD) != 0;
+        }
         
-        autoClaims.clear();
-        autoClaims.addAll(tmpAutoClaim);
+        @Override
+        long getCompletionTime(int questID, IQuest quest)
+        {
+            return completedAt.containsKey(questID) ? completedAt.get(questID) : -1L;
+        }
         
-        if(player instanceof EntityPlayerMP) NetCacheSync.sendSync((EntityPlayerMP)player);
+        // Mirrors QuestInstance.canSubmit() against the copied record and task count
+        @Override
+        boolean canSubmit(int questID, IQuest quest)
+        {
+            int f = flags.get(questID);
+            if((f & OPAQUE) != 0) return (f & SUBMIT) != 0;
+            if((f & RECORD) == 0) return true;
+            if((f & OWN_CLAIM) != 0 || quest.getProperty(NativeProps.REPEAT_TIME) < 0) return false;
+            
+            int tasks = quest.getTasks().size();
+            return tasks <= 0 || !quest.getProperty(NativeProps.LOGIC_TASK).getResult(doneTasks.get(questID), tasks);
+        }
+        
+        @Override
+        boolean readsMemo()
+        {
+            return false;
+        }
     }
     
     @Override
@@ -236,8 +721,12 @@ public class QuestCache implements IExtendedEntityProperties
         }
     }
     
-    // TODO: Make this based on a fixed state stored on the quest instead of calculated on demand
-    // TODO: Also make this thread safe
+    private static final TIntHashSet REPORTED_CYCLES = new TIntHashSet();
+    
+    /**
+     * Whether the quest should be listed for this player. CHAIN quests are looked up in the results of
+     * {@link #getShownQuests(UUID, EntityPlayer)}, which are memoised in {@link QuestStateMemo}. Safe to call from any thread
+     */
     public static boolean isQuestShown(IQuest quest, UUID uuid, EntityPlayer player)
     {
         if(quest == null || uuid == null)
@@ -245,11 +734,122 @@ public class QuestCache implements IExtendedEntityProperties
             return false;
         }
         
+        return isQuestShown(QuestDatabase.INSTANCE.getID(quest), quest, new PlayerState(uuid, player), QuestingAPI.getAPI(ApiReference.SETTINGS).canUserEdit(player));
+    }
+    
+    private static boolean isQuestShown(int questID, IQuest quest, PlayerState state, boolean canEdit)
+    {
+        Boolean shown = shownDirectly(questID, quest, state, canEdit);
+        if(shown != null) return shown;
+        
+        int known = state.readsMemo() ? QuestStateMemo.INSTANCE.getShown(state.uuid, questID, shownContext(canEdit)) : -1;
+        if(known >= 0) return known == 1;
+        
+        TIntHashSet all = computeShownQuests(state, canEdit);
+        if(questID >= 0) return all.contains(questID);
+        
+        for(int reqID : quest.getRequirements()) // Not part of the database so it isn't in the graph either
+        {
+            if(all.contains(reqID)) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * IDs of every quest shown to the player. Decided in one pass over the prerequisite graph in topological order, so a
+     * CHAIN quest only has to check whether any of its requirements was already found to be shown. Safe to call from any thread
+     */
+    public static TIntHashSet getShownQuests(UUID uuid, EntityPlayer player)
+    {
+        if(uuid == null) return new TIntHashSet();
+        return computeShownQuests(new PlayerState(uuid, player), QuestingAPI.getAPI(ApiReference.SETTINGS).canUserEdit(player));
+    }
+    
+    private static TIntHashSet computeShownQuests(PlayerState state, boolean canEdit)
+    {
+        final QuestStateMemo memo = QuestStateMemo.INSTANCE;
+        final UUID uuid = state.uuid;
+        final int ctx = shownContext(canEdit);
+        
+        IQuestGraph graph = QuestDatabase.INSTANCE.getGraph();
+        int[] order = graph.getTopologicalOrder();
+        TIntHashSet shown = new TIntHashSet();
+        boolean[] open = new boolean[order.length]; // CHAIN quests still waiting on their requirements
+        
+        TIntObjectHashMap<int[]> cycles = null;
+        for(int[] cycle : graph.getCycles())
+        {
+            if(cycles == null) cycles = new TIntObjectHashMap<>();
+            cycles.put(cycle[0], cycle);
+        }
+        
+        for(int i = 0; i < order.length; )
+        {
+            // Members of a cycle are next to each other in the order, starting with the lowest ID
+            int[] cycle = cycles == null ? null : cycles.get(order[i]);
+            int end = cycle == null ? i + 1 : i + cycle.length;
+            boolean pending = false;
+            
+            for(int j = i; j < end; j++)
+            {
+                int known = state.readsMemo() ? memo.getShown(uuid, order[j], ctx) : -1;
+                IQuest quest = known >= 0 ? null : QuestDatabase.INSTANCE.getValue(order[j]);
+                Boolean vis = known >= 0 ? Boolean.valueOf(known == 1) : quest == null ? Boolean.FALSE : shownDirectly(order[j], quest, state, canEdit);
+                
+                if(vis == null)
+                {
+                    open[j] = pending = true;
+                } else if(vis)
+                {
+                    shown.add(order[j]);
+                }
+            }
+            
+            // Requirements outside of the block are already decided. Inside a cycle, keep going until nothing else turns up
+            boolean changed = pending;
+            while(changed)
+            {
+                changed = false;
+                for(int j = i; j < end; j++)
+                {
+                    if(!open[j]) continue;
+                    for(int reqID : graph.getRequirements(order[j]))
+                    {
+                        if(!shown.contains(reqID)) continue;
+                        shown.add(order[j]);
+                        open[j] = false;
+                        changed = cycle != null;
+                        break;
+                    }
+                }
+            }
+            
+            for(int j = i; j < end; j++)
+            {
+                if(pending && cycle != null) reportCycle(order[j]);
+                memo.putShown(uuid, order[j], ctx, state.stamp, shown.contains(order[j]));
+            }
+            
+            i = end;
+        }
+        
+        return shown;
+    }
+    
+    private static int shownContext(boolean canEdit)
+    {
+        return (canEdit ? 1 : 0) | (BQ_Settings.viewMode ? 2 : 0);
+    }
+    
+    /**
+     * Visibility that can be decided from the quest alone, or null for CHAIN quests which depend on their requirements
+     */
+    @Nullable
+    private static Boolean shownDirectly(int questID, IQuest quest, PlayerState state, boolean canEdit)
+    {
         EnumQuestVisibility vis = quest.getProperty(NativeProps.VISIBILITY);
         
-        if(
-            QuestingAPI.getAPI(ApiReference.SETTINGS).canUserEdit(player)
-            || vis == EnumQuestVisibility.ALWAYS) // Always shown or in edit mode
+        if(canEdit || vis == EnumQuestVisibility.ALWAYS) // Always shown or in edit mode
         {
             return true;
         } else if(vis == EnumQuestVisibility.HIDDEN)
@@ -257,24 +857,25 @@ public class QuestCache implements IExtendedEntityProperties
             return false;
         } else if(vis == EnumQuestVisibility.SECRET)
         {
-            return quest.isComplete(uuid) || quest.isUnlocked(uuid);
+            return state.isComplete(questID, quest) || state.isUnlocked(questID, quest);
         } else if(BQ_Settings.viewMode)
         {
             return true;
         } else if(vis == EnumQuestVisibility.UNLOCKED)
         {
-            return quest.isComplete(uuid) || quest.isUnlocked(uuid);
+            return state.isComplete(questID, quest) || state.isUnlocked(questID, quest);
         } else if(vis == EnumQuestVisibility.NORMAL)
         {
-            if(quest.isComplete(uuid) || quest.isUnlocked(uuid)) // Complete or pending
+            if(state.isComplete(questID, quest) || state.isUnlocked(questID, quest)) // Complete or pending
             {
                 return true;
             }
             
             // Previous quest is underway and this one is visible but still locked (foreshadowing)
-            for(DBEntry<IQuest> q : QuestDatabase.INSTANCE.bulkLookup(quest.getRequirements()))
+            for(int reqID : quest.getRequirements())
             {
-                if(!q.getValue().isUnlocked(uuid))
+                IQuest q = QuestDatabase.INSTANCE.getValue(reqID);
+                if(q != null && !state.isUnlocked(reqID, q))
                 {
                     return false;
                 }
@@ -283,27 +884,22 @@ public class QuestCache implements IExtendedEntityProperties
             return true;
         } else if(vis == EnumQuestVisibility.COMPLETED)
         {
-            return quest.isComplete(uuid);
+            return state.isComplete(questID, quest);
         } else if(vis == EnumQuestVisibility.CHAIN)
         {
-            if(quest.getRequirements().length <= 0)
-            {
-                return true;
-            }
-            
-            for(DBEntry<IQuest> q : QuestDatabase.INSTANCE.bulkLookup(quest.getRequirements()))
-            {
-                if(q == null) return true;
-                
-                if(isQuestShown(q.getValue(), uuid, player))
-                {
-                    return true;
-                }
-            }
-            
-            return false;
+            return quest.getRequirements().length <= 0 ? true : null;
         }
         
         return true;
     }
+    
+    private static void reportCycle(int questID)
+    {
+        synchronized(REPORTED_CYCLES)
+        {
+            if(!REPORTED_CYCLES.add(questID)) return;
+        }
+        
+        QuestingAPI.getLogger().log(Level.WARN, "Quest " + questID + " is part of a circular requirement chain. Ignoring the cycle when checking visibility");
+    }
 }
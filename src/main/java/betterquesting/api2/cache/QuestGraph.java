@@ -0,0 +1,454 @@
+package betterquesting.api2.cache;
+
+import betterquesting.api.questing.IQuest;
+import betterquesting.api.questing.IQuestGraph;
+import betterquesting.api2.storage.DBEntry;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Default {@link IQuestGraph} compiled in O(V + E). Nodes are addressed by their index in the sorted ID array and edges
+ * are held in compressed rows, so walking the graph never boxes or allocates.
+ */
+public final class QuestGraph implements IQuestGraph
+{
+    private static final QuestGraph EMPTY = build(new int[0], new int[0][]);
+
+    private final int[] ids; // Ascending
+
+    // Compressed rows of node indices. Row i spans [start[i], start[i + 1])
+    private final int[] reqStart;
+    private final int[] reqs;
+    private final int[] depStart;
+    private final int[] deps;
+
+    private final int[] order; // Node indices, requirements first
+    private final int[] position; // Index of each node in the order
+    private final int[] component; // Root node of each node's strongly connected component
+    private final int[] depth;
+    private final int maxDepth;
+    private final int[] levelStart; // Rows of node indices in order by depth
+    private final int[] levels;
+    private final int[][] cycles; // Quest IDs
+    private final boolean[] cyclic;
+
+    public static QuestGraph compile(List<DBEntry<IQuest>> entries)
+    {
+        if(entries.isEmpty()) return EMPTY;
+
+        @SuppressWarnings("unchecked")
+        DBEntry<IQuest>[] sorted = entries.toArray(new DBEntry[0]);
+        boolean ordered = true;
+        for(int i = 1; i < sorted.length && ordered; i++) ordered = sorted[i - 1].getID() < sorted[i].getID();
+        if(!ordered) Arrays.sort(sorted);
+
+        int[] ids = new int[sorted.length];
+        int[][] reqIDs = new int[sorted.length][];
+        for(int i = 0; i < sorted.length; i++)
+        {
+            ids[i] = sorted[i].getID();
+            reqIDs[i] = sorted[i].getValue().getRequirements();
+        }
+
+        return build(ids, reqIDs);
+    }
+
+    /**
+     * Copy of this graph with the given quests' requirements replaced, or the quests added or removed where they are
+     * missing from the graph or mapped to null. Everything else is reused as already resolved. If no quest is added or
+     * removed and every replaced row only requires quests ordered before it, outside of any cycle, the existing order
+     * and cycles stay valid and only the depths from the first edited quest onwards are recomputed
+     */
+    public QuestGraph patch(TIntObjectMap<int[]> rows)
+    {
+        if(rows.isEmpty()) return this;
+
+        int n = ids.length;
+        boolean inPlace = true;
+        int from = n;
+        for(TIntObjectIterator<int[]> iter = rows.iterator(); iter.hasNext() && inPlace; )
+        {
+            iter.advance();
+            int idx = Arrays.binarySearch(ids, iter.key());
+            if(idx < 0 || iter.value() == null || cyclic[idx])
+            {
+                inPlace = false;
+                break;
+            }
+
+            for(int reqID : iter.value())
+            {
+                int r = Arrays.binarySearch(ids, reqID);
+                if(r >= 0 && position[r] >= position[idx]) inPlace = false;
+            }
+            from = Math.min(from, position[idx]);
+        }
+
+        if(inPlace)
+        {
+            int[][] reqIDs = new int[n][];
+            for(int i = 0; i < n; i++) reqIDs[i] = rows.containsKey(ids[i]) ? rows.get(ids[i]) : toIDs(reqs, reqStart[i], reqStart[i + 1]);
+            int[][] rowData = buildRows(ids, reqIDs);
+
+            int[] newDepth = depth.clone();
+            for(int i = from; i < n; )
+            {
+                // Components are contiguous in the order so a cycle is handled as one block
+                int end = i + 1;
+                while(end < n && component[order[end]] == component[order[i]]) end++;
+
+                int d = 0;
+                for(int j = i; j < end; j++)
+                {
+                    int u = order[j];
+                    for(int e = rowData[0][u]; e < rowData[0][u + 1]; e++)
+                    {
+                        int r = rowData[1][e];
+                        if(component[r] != component[u] && newDepth[r] + 1 > d) d = newDepth[r] + 1;
+                    }
+                }
+
+                for(int j = i; j < end; j++) newDepth[order[j]] = d;
+                i = end;
+            }
+
+            return new QuestGraph(ids, rowData[0], rowData[1], order, component, newDepth, cycles, cyclic);
+        }
+
+        TIntArrayList kept = new TIntArrayList(n + rows.size());
+        for(int id : ids) if(!rows.containsKey(id)) kept.add(id);
+        rows.forEachEntry((id, row) -> row == null || kept.add(id));
+        kept.sort();
+
+        int[] newIDs = kept.toArray();
+        int[][] reqIDs = new int[newIDs.length][];
+        for(int i = 0; i < newIDs.length; i++)
+        {
+            int[] row = rows.get(newIDs[i]);
+            if(row == null)
+            {
+                int idx = Arrays.binarySearch(ids, newIDs[i]);
+                row = toIDs(reqs, reqStart[idx], reqStart[idx + 1]);
+            }
+            reqIDs[i] = row;
+        }
+
+        return newIDs.length <= 0 ? EMPTY : build(newIDs, reqIDs);
+    }
+
+    /**
+     * @param ids Unique quest IDs in ascending order
+     * @param reqIDs Requirements of each quest by ID. Any not in the ID array are dropped
+     */
+    private static QuestGraph build(int[] ids, int[][] reqIDs)
+    {
+        int n = ids.length;
+        int[][] rowData = buildRows(ids, reqIDs);
+        int[] reqStart = rowData[0];
+        int[] reqs = rowData[1];
+
+        // Tarjan's algorithm following edges towards requirements, which emits components requirements first
+        int[] order = new int[n];
+        int[] depth = new int[n];
+        boolean[] cyclic = new boolean[n];
+        List<int[]> cycleList = new ArrayList<>();
+
+        int[] index = new int[n];
+        int[] low = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] callNode = new int[n];
+        int[] callEdge = new int[n];
+        int[] component = new int[n];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int sp = 0;
+        int emitted = 0;
+
+        for(int root = 0; root < n; root++)
+        {
+            if(index[root] >= 0) continue;
+
+            int cp = 0;
+            callNode[0] = root;
+            callEdge[0] = reqStart[root];
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+
+            while(cp >= 0)
+            {
+                int v = callNode[cp];
+
+                if(callEdge[cp] < reqStart[v + 1])
+                {
+                    int w = reqs[callEdge[cp]++];
+                    if(index[w] < 0)
+                    {
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        cp++;
+                        callNode[cp] = w;
+                        callEdge[cp] = reqStart[w];
+                    } else if(onStack[w] && index[w] < low[v])
+                    {
+                        low[v] = index[w];
+                    }
+                    continue;
+                }
+
+                cp--;
+                if(cp >= 0 && low[v] < low[callNode[cp]]) low[callNode[cp]] = low[v];
+                if(low[v] != index[v]) continue;
+
+                // v is the root of a component. Everything it requires outside of it has already been emitted
+                int first = emitted;
+                int w;
+                do
+                {
+                    w = stack[--sp];
+                    onStack[w] = false;
+                    component[w] = v;
+                    order[emitted++] = w;
+                } while(w != v);
+
+                int d = 0;
+                boolean selfLoop = false;
+                for(int i = first; i < emitted; i++)
+                {
+                    int u = order[i];
+                    for(int e = reqStart[u]; e < reqStart[u + 1]; e++)
+                    {
+                        int r = reqs[e];
+                        if(r == u) selfLoop = true;
+                        if(component[r] != v && depth[r] + 1 > d) d = depth[r] + 1;
+                    }
+                }
+
+                if(emitted - first > 1 || selfLoop)
+                {
+                    Arrays.sort(order, first, emitted);
+                    int[] cycle = new int[emitted - first];
+                    for(int i = first; i < emitted; i++)
+                    {
+                        cyclic[order[i]] = true;
+                        cycle[i - first] = ids[order[i]];
+                    }
+                    cycleList.add(cycle);
+                }
+
+                for(int i = first; i < emitted; i++) depth[order[i]] = d;
+            }
+        }
+
+        return new QuestGraph(ids, reqStart, reqs, order, component, depth, cycleList.toArray(new int[0][]), cyclic);
+    }
+
+    // Requirement rows by node index, deduplicated since edges are counted for the dependent rows
+    private static int[][] buildRows(int[] ids, int[][] reqIDs)
+    {
+        int n = ids.length;
+        int[] reqStart = new int[n + 1];
+        int[] buf = new int[16];
+        int edges = 0;
+        for(int i = 0; i < n; i++)
+        {
+            reqStart[i] = edges;
+            int[] row = reqIDs[i];
+            if(buf.length < edges + row.length) buf = Arrays.copyOf(buf, Math.max(edges + row.length, buf.length * 2));
+
+            for(int reqID : row)
+            {
+                int idx = Arrays.binarySearch(ids, reqID);
+                if(idx < 0) continue;
+
+                boolean dupe = false;
+                for(int j = reqStart[i]; j < edges && !dupe; j++) dupe = buf[j] == idx;
+                if(!dupe) buf[edges++] = idx;
+            }
+
+            Arrays.sort(buf, reqStart[i], edges);
+        }
+        reqStart[n] = edges;
+        return new int[][]{reqStart, Arrays.copyOf(buf, edges)};
+    }
+
+    private QuestGraph(int[] ids, int[] reqStart, int[] reqs, int[] order, int[] component, int[] depth, int[][] cycles, boolean[] cyclic)
+    {
+        int n = ids.length;
+        this.ids = ids;
+        this.reqStart = reqStart;
+        this.reqs = reqs;
+        this.order = order;
+        this.component = component;
+        this.depth = depth;
+        this.cycles = cycles;
+        this.cyclic = cyclic;
+
+        // Dependent rows, filled in ascending order since the outer loop runs through dependents in order
+        int edges = reqs.length;
+        depStart = new int[n + 1];
+        for(int e = 0; e < edges; e++) depStart[reqs[e] + 1]++;
+        for(int i = 0; i < n; i++) depStart[i + 1] += depStart[i];
+        deps = new int[edges];
+        int[] fill = Arrays.copyOf(depStart, n);
+        for(int i = 0; i < n; i++)
+        {
+            for(int e = reqStart[i]; e < reqStart[i + 1]; e++) deps[fill[reqs[e]]++] = i;
+        }
+
+        position = new int[n];
+        int deepest = 0;
+        for(int i = 0; i < n; i++)
+        {
+            position[order[i]] = i;
+            if(depth[i] > deepest) deepest = depth[i];
+        }
+        maxDepth = n > 0 ? deepest : -1;
+
+        // Levels bucketed by depth, in ascending ID order within each
+        levelStart = new int[maxDepth + 2];
+        for(int i = 0; i < n; i++) levelStart[depth[i] + 1]++;
+        for(int d = 0; d <= maxDepth; d++) levelStart[d + 1] += levelStart[d];
+        levels = new int[n];
+        fill = Arrays.copyOf(levelStart, maxDepth + 1);
+        for(int i = 0; i < n; i++) levels[fill[depth[i]]++] = i;
+    }
+
+    @Override
+    public int size()
+    {
+        return ids.length;
+    }
+
+    @Override
+    public boolean contains(int questID)
+    {
+        return Arrays.binarySearch(ids, questID) >= 0;
+    }
+
+    @Override
+    public int[] getQuestIDs()
+    {
+        return ids.clone();
+    }
+
+    @Override
+    public int[] getRequirements(int questID)
+    {
+        int idx = Arrays.binarySearch(ids, questID);
+        return idx < 0 ? new int[0] : toIDs(reqs, reqStart[idx], reqStart[idx + 1]);
+    }
+
+    @Override
+    public int[] getDependents(int questID)
+    {
+        int idx = Arrays.binarySearch(ids, questID);
+        return idx < 0 ? new int[0] : toIDs(deps, depStart[idx], depStart[idx + 1]);
+    }
+
+    @Override
+    public boolean requires(int questID, int reqID)
+    {
+        int from = Arrays.binarySearch(ids, questID);
+        int to = Arrays.binarySearch(ids, reqID);
+        if(from < 0 || to < 0) return false;
+        if(component[from] == component[to]) return from != to || cyclic[from];
+        if(position[to] > position[from]) return false; // Requirements outside of a cycle always come first in the order
+
+        boolean[] seen = new boolean[ids.length];
+        int[] queue = new int[ids.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        seen[from] = true;
+
+        while(head < tail)
+        {
+            int v = queue[head++];
+            for(int e = reqStart[v]; e < reqStart[v + 1]; e++)
+            {
+                int r = reqs[e];
+                if(component[r] == component[to]) return true;
+                if(seen[r] || position[r] < position[to]) continue; // Can't lead back up to the target
+                seen[r] = true;
+                queue[tail++] = r;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int[] getTopologicalOrder()
+    {
+        return toIDs(order, 0, order.length);
+    }
+
+    @Override
+    public int getDepth(int questID)
+    {
+        int idx = Arrays.binarySearch(ids, questID);
+        return idx < 0 ? -1 : depth[idx];
+    }
+
+    @Override
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    @Override
+    public int[] getLevel(int depth)
+    {
+        if(depth < 0 || depth > maxDepth) return new int[0];
+        return toIDs(levels, levelStart[depth], levelStart[depth + 1]);
+    }
+
+    @Override
+    public int[][] getCycles()
+    {
+        int[][] copy = new int[cycles.length][];
+        for(int i = 0; i < cycles.length; i++) copy[i] = cycles[i].clone();
+        return copy;
+    }
+
+    @Override
+    public boolean isInCycle(int questID)
+    {
+        int idx = Arrays.binarySearch(ids, questID);
+        return idx >= 0 && cyclic[idx];
+    }
+
+    @Override
+    public QuestGraph getSubgraph(int... questIDs)
+    {
+        int[] subIDs = questIDs.clone();
+        Arrays.sort(subIDs);
+
+        int n = 0;
+        for(int i = 0; i < subIDs.length; i++)
+        {
+            if((i == 0 || subIDs[i] != subIDs[i - 1]) && contains(subIDs[i])) subIDs[n++] = subIDs[i];
+        }
+        if(n <= 0) return EMPTY;
+        subIDs = Arrays.copyOf(subIDs, n);
+
+        int[][] subReqs = new int[n][];
+        for(int i = 0; i < n; i++) subReqs[i] = getRequirements(subIDs[i]);
+        return build(subIDs, subReqs);
+    }
+
+    private int[] toIDs(int[] nodes, int from, int to)
+    {
+        int[] out = new int[to - from];
+        for(int i = from; i < to; i++) out[i - from] = ids[nodes[i]];
+        return out;
+    }
+}
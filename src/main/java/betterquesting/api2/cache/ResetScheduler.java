@@ -0,0 +1,165 @@
+package betterquesting.api2.cache;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Server wide queue of pending repeatable quest resets, ordered by due time.<br>
+ * Player caches schedule entries as they evaluate quests so the queue can always be rebuilt from progress. Checking
+ * whether anything is due is a single volatile read, so nothing is paid between resets.
+ */
+public final class ResetScheduler
+{
+    public static final ResetScheduler INSTANCE = new ResetScheduler();
+    
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final HashMap<UUID, TIntObjectHashMap<Entry>> byUser = new HashMap<>();
+    private int cancelled = 0; // Entries still in the queue that should be skipped
+    private volatile long nextDue = Long.MAX_VALUE;
+    
+    private ResetScheduler()
+    {
+    }
+    
+    /**
+     * Earliest due time of any live entry or {@link Long#MAX_VALUE} if nothing is scheduled
+     */
+    public long getNextDue()
+    {
+        return nextDue;
+    }
+    
+    /**
+     * Schedules the user's quest to reset at the given time, replacing any previous entry for it
+     */
+    public synchronized void schedule(@Nonnull UUID uuid, int questID, long time)
+    {
+        TIntObjectHashMap<Entry> userMap = byUser.computeIfAbsent(uuid, (key) -> new TIntObjectHashMap<>());
+        Entry prev = userMap.get(questID);
+        if(prev != null && prev.time == time) return; // Refreshes usually land on the same time. Don't churn the queue
+        if(prev != null) markCancelled(prev);
+        
+        Entry entry = new Entry(uuid, questID, time);
+        userMap.put(questID, entry);
+        queue.add(entry);
+        updateNextDue();
+    }
+    
+    public synchronized void cancel(@Nonnull UUID uuid, int questID)
+    {
+        TIntObjectHashMap<Entry> userMap = byUser.get(uuid);
+        Entry entry = userMap == null ? null : userMap.remove(questID);
+        if(entry == null) return;
+        
+        markCancelled(entry);
+        if(userMap.isEmpty()) byUser.remove(uuid);
+        updateNextDue();
+    }
+    
+    /**
+     * Cancels all of the user's entries except those for the given quests
+     */
+    public synchronized void retainOnly(@Nonnull UUID uuid, @Nonnull TIntSet questIDs)
+    {
+        TIntObjectHashMap<Entry> userMap = byUser.get(uuid);
+        if(userMap == null) return;
+        
+        userMap.retainEntries((questID, entry) -> {
+            if(questIDs.contains(questID)) return true;
+            markCancelled(entry);
+            return false;
+        });
+        
+        if(userMap.isEmpty()) byUser.remove(uuid);
+        updateNextDue();
+    }
+    
+    /**
+     * Removes and returns every live entry due at or before the given time, earliest first
+     */
+    public synchronized List<Entry> pollDue(long time)
+    {
+        List<Entry> due = new ArrayList<>();
+        
+        while(!queue.isEmpty() && queue.peek().time <= time)
+        {
+            Entry entry = queue.poll();
+            
+            if(entry.cancelled)
+            {
+                cancelled--;
+                continue;
+            }
+            
+            TIntObjectHashMap<Entry> userMap = byUser.get(entry.uuid);
+            userMap.remove(entry.questID);
+            if(userMap.isEmpty()) byUser.remove(entry.uuid);
+            due.add(entry);
+        }
+        
+        updateNextDue();
+        return due;
+    }
+    
+    public synchronized void reset()
+    {
+        queue.clear();
+        byUser.clear();
+        cancelled = 0;
+        nextDue = Long.MAX_VALUE;
+    }
+    
+    private void markCancelled(Entry entry)
+    {
+        entry.cancelled = true;
+        cancelled++;
+        
+        if(cancelled > 64 && cancelled > queue.size() / 2) // Mostly dead weight. Rebuild from the live entries
+        {
+            List<Entry> live = new ArrayList<>(queue.size() - cancelled);
+            for(Entry e : queue) if(!e.cancelled) live.add(e);
+            queue.clear();
+            queue.addAll(live);
+            cancelled = 0;
+        }
+    }
+    
+    private void updateNextDue()
+    {
+        while(!queue.isEmpty() && queue.peek().cancelled)
+        {
+            queue.poll();
+            cancelled--;
+        }
+        
+        nextDue = queue.isEmpty() ? Long.MAX_VALUE : queue.peek().time;
+    }
+    
+    public static final class Entry implements Comparable<Entry>
+    {
+        public final UUID uuid;
+        public final int questID;
+        public final long time;
+        private boolean cancelled = false;
+        
+        private Entry(UUID uuid, int questID, long time)
+        {
+            this.uuid = uuid;
+            this.questID = questID;
+            this.time = time;
+        }
+        
+        @Override
+        public int compareTo(Entry o)
+        {
+            return Long.compare(time, o.time);
+        }
+    }
+}
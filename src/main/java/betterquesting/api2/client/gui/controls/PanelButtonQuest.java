@@ -150,13 +150,12 @@ public class PanelButtonQuest extends PanelButtonStorage<DBEntry<IQuest>>
 			list.add(ChatFormatting.RED + "" + ChatFormatting.UNDERLINE + QuestTranslation.translate("betterquesting.tooltip.requires") + " (" + quest.getProperty(NativeProps.LOGIC_QUEST).toString().toUpperCase() + ")");
 
 			// TODO: Make this lookup unnecessary
-			for(DBEntry<IQuest> req : QuestDatabase.INSTANCE.bulkLookup(quest.getRequirements()))
-			{
-				if(!req.getValue().isComplete(playerID))
+			QuestDatabase.INSTANCE.forEachOf(quest.getRequirements(), (reqID, req) -> {
+				if(!req.isComplete(playerID))
 				{
-					list.add(ChatFormatting.RED + "- " + QuestTranslation.translate(req.getValue().getProperty(NativeProps.NAME)));
+					list.add(ChatFormatting.RED + "- " + QuestTranslation.translate(req.getProperty(NativeProps.NAME)));
 				}
-			}
+			});
 		} else
 		{
 			int n = 0;
@@ -216,9 +215,10 @@ public class PanelButtonQuest extends PanelButtonStorage<DBEntry<IQuest>>
 	{
 		if(quest.getProperty(NativeProps.REPEAT_TIME) < 0) return -1;
 
-        NBTTagCompound ue = quest.getCompletionInfo(QuestingAPI.getQuestingUUID(player));
-        if(ue == null) return 0;
+        UUID uuid = QuestingAPI.getQuestingUUID(player);
+        if(!quest.hasCompletionRecord(uuid)) return 0;
+        long completedAt = quest.getCompletionTime(uuid);
 
-        return ((quest.getProperty(NativeProps.REPEAT_TIME) * 50L) - (System.currentTimeMillis() - ue.getLong("timestamp"))) / 1000L;
+        return ((quest.getProperty(NativeProps.REPEAT_TIME) * 50L) - (System.currentTimeMillis() - completedAt)) / 1000L;
 	}
 }
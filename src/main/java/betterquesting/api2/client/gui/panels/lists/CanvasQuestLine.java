@@ -23,6 +23,7 @@ import betterquesting.api2.client.gui.resources.textures.SimpleTexture;
 import betterquesting.api2.client.gui.themes.presets.PresetColor;
 import betterquesting.api2.client.gui.themes.presets.PresetLine;
 import betterquesting.api2.storage.DBEntry;
+import gnu.trove.set.hash.TIntHashSet;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.util.ResourceLocation;
@@ -107,12 +108,13 @@ public class CanvasQuestLine extends CanvasScrolling
         }
         
         HashMap<Integer, PanelButtonQuest> questBtns = new HashMap<>();
+        TIntHashSet shown = QuestCache.getShownQuests(pid, player);
         
         for(DBEntry<IQuestLineEntry> qle : line.getEntries())
         {
             IQuest quest = QuestingAPI.getAPI(ApiReference.QUEST_DB).getValue(qle.getID());
             
-            if(!QuestCache.isQuestShown(quest, pid, player)) continue;
+            if(quest == null || !shown.contains(qle.getID())) continue;
             
             GuiRectangle rect = new GuiRectangle(qle.getValue().getPosX(), qle.getValue().getPosY(), qle.getValue().getSizeX(), qle.getValue().getSizeY());
             PanelButtonQuest paBtn = new PanelButtonQuest(rect, buttonId, "", new DBEntry<>(qle.getID(), quest));
@@ -0,0 +1,120 @@
+package betterquesting.api2.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable point in time view of a database. Reads never lock and later edits to the database are not reflected, so a
+ * single snapshot can be held for the length of a long running task (syncing, cache refreshes, etc.) for a stable view.
+ */
+public final class DBSnapshot<T>
+{
+    private final List<DBEntry<T>> entries;
+
+    // Indexed directly by ID when compact enough. Otherwise this holds the entries in order and lookups bisect the keys
+    private final DBEntry<T>[] byID;
+    private final int[] keys;
+
+    /**
+     * Wraps a list that is both immutable and in ascending ID order without copying it
+     */
+    @SuppressWarnings("unchecked")
+    private DBSnapshot(List<DBEntry<T>> sortedView)
+    {
+        this.entries = sortedView;
+        
+        int n = sortedView.size();
+        int maxID = n > 0 ? sortedView.get(n - 1).getID() : -1;
+
+        if(maxID < 16 || (maxID < SimpleDatabase.CACHE_MAX_SIZE && n >= SimpleDatabase.SPARSE_RATIO * (maxID + 1)))
+        {
+            byID = new DBEntry[maxID + 1];
+            for(int i = 0; i < n; i++) byID[sortedView.get(i).getID()] = sortedView.get(i);
+            keys = null;
+        } else
+        {
+            byID = sortedView.toArray(new DBEntry[n]);
+            keys = new int[n];
+            for(int i = 0; i < n; i++) keys[i] = byID[i].getID();
+        }
+    }
+    
+    /**
+     * Used by {@link SimpleDatabase} which already keeps an immutable ordered view of its entries
+     */
+    static <T> DBSnapshot<T> ofSorted(List<DBEntry<T>> sortedView)
+    {
+        return new DBSnapshot<>(sortedView);
+    }
+    
+    /**
+     * Copies the given entries, sorting them first if they aren't already in ascending ID order
+     */
+    @SuppressWarnings("unchecked")
+    static <T> DBSnapshot<T> copyOf(List<DBEntry<T>> entries)
+    {
+        DBEntry<T>[] sorted = entries.toArray(new DBEntry[0]);
+        boolean ordered = true;
+        for(int i = 1; i < sorted.length && ordered; i++) ordered = sorted[i - 1].getID() < sorted[i].getID();
+        if(!ordered) Arrays.sort(sorted);
+        return new DBSnapshot<>(Collections.unmodifiableList(Arrays.asList(sorted)));
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public T getValue(int id)
+    {
+        DBEntry<T> entry = getEntry(id);
+        return entry == null ? null : entry.getValue();
+    }
+
+    public DBEntry<T> getEntry(int id)
+    {
+        if(id < 0) return null;
+
+        if(keys == null) return id < byID.length ? byID[id] : null;
+
+        int idx = Arrays.binarySearch(keys, id);
+        return idx < 0 ? null : byID[idx];
+    }
+
+    /**
+     * All entries in ascending ID order
+     */
+    public List<DBEntry<T>> getEntries()
+    {
+        return entries;
+    }
+
+    public List<DBEntry<T>> bulkLookup(int... ids)
+    {
+        if(ids.length <= 0 || entries.isEmpty()) return Collections.emptyList();
+
+        List<DBEntry<T>> list = new ArrayList<>(ids.length);
+        for(int id : ids)
+        {
+            DBEntry<T> entry = getEntry(id);
+            if(entry != null) list.add(entry);
+        }
+        return list;
+    }
+
+    public void forEach(IntObjConsumer<T> action)
+    {
+        for(int i = 0; i < entries.size(); i++) action.accept(entries.get(i).getID(), entries.get(i).getValue());
+    }
+
+    public void forEachOf(int[] ids, IntObjConsumer<T> action)
+    {
+        for(int id : ids)
+        {
+            DBEntry<T> entry = getEntry(id);
+            if(entry != null) action.accept(id, entry.getValue());
+        }
+    }
+}
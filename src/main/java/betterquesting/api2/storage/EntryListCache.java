@@ -0,0 +1,108 @@
+package betterquesting.api2.storage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered entry array behind {@link SimpleDatabase#getEntries()}, patched in place as entries are added and removed
+ * instead of being thrown away on every edit.<br>
+ * Lists handed out are immutable views over a prefix of the shared array. Slots covered by a published view are never
+ * written again: appends past them happen in place, anything else either copies the array or drops it to be rebuilt
+ * from the store the next time it is asked for.<br>
+ * Not thread safe. Callers are expected to hold their own lock.
+ */
+final class EntryListCache<T>
+{
+    private DBEntry<T>[] entries = null;
+    private int size = 0;
+    private int published = 0; // Length of the prefix visible through views that may still be in use
+    private List<DBEntry<T>> view = null;
+
+    public List<DBEntry<T>> getView(IntEntryStore<T> store)
+    {
+        if(view != null) return view;
+
+        if(entries == null)
+        {
+            entries = store.toArray();
+            size = entries.length;
+            published = 0;
+        }
+
+        published = Math.max(published, size);
+        view = Collections.unmodifiableList(Arrays.asList(entries).subList(0, size));
+        return view;
+    }
+
+    public void onAdd(DBEntry<T> entry)
+    {
+        if(entries == null) return;
+        view = null;
+
+        int id = entry.getID();
+        int idx = size > 0 && entries[size - 1].getID() < id ? size : insertionPoint(id);
+
+        if(idx < published && idx < size) // Shifting would be visible through an existing view
+        {
+            entries = null;
+            return;
+        }
+
+        if(size >= entries.length || size < published)
+        {
+            entries = Arrays.copyOf(entries, Math.max(16, size + (size >> 1) + 1));
+            published = 0;
+        }
+
+        System.arraycopy(entries, idx, entries, idx + 1, size - idx);
+        entries[idx] = entry;
+        size++;
+    }
+
+    public void onRemove(int id)
+    {
+        if(entries == null) return;
+        view = null;
+
+        int idx = insertionPoint(id);
+        if(idx >= size || entries[idx].getID() != id) return;
+
+        if(idx < published && idx < size - 1) // Shifting would be visible through an existing view
+        {
+            entries = null;
+            return;
+        }
+
+        System.arraycopy(entries, idx + 1, entries, idx, size - idx - 1);
+        size--;
+        if(size >= published) entries[size] = null;
+    }
+
+    public void clear()
+    {
+        entries = null;
+        size = 0;
+        published = 0;
+        view = null;
+    }
+
+    // Index of the first entry with an ID not less than the given one
+    private int insertionPoint(int id)
+    {
+        int lo = 0;
+        int hi = size;
+        while(lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if(entries[mid].getID() < id)
+            {
+                lo = mid + 1;
+            } else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
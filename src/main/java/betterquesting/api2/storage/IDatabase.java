@@ -1,12 +1,23 @@
 package betterquesting.api2.storage;
 
 import java.util.List;
+import java.util.Map;
 
 public interface IDatabase<T>
 {
     int nextID();
     
     DBEntry<T> add(int id, T value);
+    
+    /**
+     * Adds every given entry as a single batch so implementations only need to lock and update their indexes once.
+     * The default implementation simply adds them one at a time.
+     */
+    default void addAll(Map<Integer, T> entries)
+    {
+        for(Map.Entry<Integer, T> entry : entries.entrySet()) add(entry.getKey(), entry.getValue());
+    }
+    
     boolean removeID(int key);
     boolean removeValue(T value);
     
@@ -18,4 +29,33 @@ public interface IDatabase<T>
     
     List<DBEntry<T>> getEntries();
     List<DBEntry<T>> bulkLookup(int... keys);
+    
+    /**
+     * Returns an immutable view of the database as it is right now. The default implementation copies the current entries
+     */
+    default DBSnapshot<T> snapshot()
+    {
+        return DBSnapshot.copyOf(getEntries());
+    }
+    
+    /**
+     * Visits every entry in ascending ID order without creating any intermediate lists
+     */
+    default void forEach(IntObjConsumer<T> action)
+    {
+        List<DBEntry<T>> entries = getEntries();
+        for(int i = 0; i < entries.size(); i++) action.accept(entries.get(i).getID(), entries.get(i).getValue());
+    }
+    
+    /**
+     * Visits the entries for the given IDs in the order given. Missing IDs are skipped
+     */
+    default void forEachOf(int[] keys, IntObjConsumer<T> action)
+    {
+        for(int k : keys)
+        {
+            T value = getValue(k);
+            if(value != null) action.accept(k, value);
+        }
+    }
 }
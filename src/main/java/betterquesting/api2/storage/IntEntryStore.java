@@ -0,0 +1,283 @@
+package betterquesting.api2.storage;
+
+import java.util.Arrays;
+
+/**
+ * Primitive int keyed storage backing {@link SimpleDatabase}.<br>
+ * While the ID space is compact enough entries are held in an array indexed directly by ID. Sparse ID spaces fall back to
+ * a pair of sorted parallel arrays searched by bisection. Entries are kept as {@link DBEntry} instances so lookups and
+ * ordered iteration never need to box keys or allocate new entries.<br>
+ * Not thread safe. Callers are expected to hold their own lock.
+ */
+final class IntEntryStore<T>
+{
+    private static final int MIN_DENSE_SIZE = 16;
+    private static final int HYSTERESIS = 2;
+
+    // Dense mode: index is the ID. Null while in sparse mode
+    private DBEntry<T>[] dense = newArray(MIN_DENSE_SIZE);
+    private int denseTop = 0; // One past the highest occupied ID
+    private int firstFree = 0; // Lowest unoccupied ID
+
+    // Sparse mode: ascending IDs and their entries. Null while in dense mode
+    private int[] sparseKeys = null;
+    private DBEntry<T>[] sparseVals = null;
+
+    private int size = 0;
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isDense()
+    {
+        return dense != null;
+    }
+
+    public DBEntry<T> get(int id)
+    {
+        if(id < 0) return null;
+
+        if(dense != null)
+        {
+            return id < denseTop ? dense[id] : null;
+        }
+
+        int idx = Arrays.binarySearch(sparseKeys, 0, size, id);
+        return idx < 0 ? null : sparseVals[idx];
+    }
+
+    /**
+     * Inserts the entry. The caller must have already checked the ID is not in use
+     */
+    public void put(DBEntry<T> entry)
+    {
+        int id = entry.getID();
+
+        if(dense != null)
+        {
+            if(shouldBeSparse(size + 1, Math.max(id, denseTop - 1)))
+            {
+                toSparse();
+                putSparse(entry);
+                return;
+            }
+
+            if(id >= dense.length) dense = Arrays.copyOf(dense, Math.max(id + 1, dense.length + (dense.length >> 1)));
+            dense[id] = entry;
+            size++;
+            if(id >= denseTop) denseTop = id + 1;
+            if(id == firstFree) advanceFirstFree();
+        } else
+        {
+            putSparse(entry);
+            if(shouldBeDense(size, sparseKeys[size - 1])) toDense();
+        }
+    }
+
+    /**
+     * Inserts a batch of entries sorted by ascending ID, picking the storage mode once for the final size.
+     * The caller must have already checked none of the IDs are in use
+     */
+    public void putAll(DBEntry<T>[] sorted)
+    {
+        if(sorted.length <= 0) return;
+
+        int count = size + sorted.length;
+        int maxID = Math.max(sorted[sorted.length - 1].getID(), dense != null ? denseTop - 1 : (size > 0 ? sparseKeys[size - 1] : -1));
+        boolean useDense = dense != null ? !shouldBeSparse(count, maxID) : shouldBeDense(count, maxID);
+
+        if(useDense)
+        {
+            if(dense == null) toDense();
+            if(maxID >= dense.length) dense = Arrays.copyOf(dense, maxID + 1);
+            for(DBEntry<T> entry : sorted) dense[entry.getID()] = entry;
+            size = count;
+            denseTop = Math.max(denseTop, maxID + 1);
+            advanceFirstFree();
+        } else
+        {
+            if(dense != null) toSparse();
+
+            // Merge both sorted runs back to front into the enlarged arrays
+            int[] keys = Arrays.copyOf(sparseKeys, Math.max(count, sparseKeys.length));
+            DBEntry<T>[] vals = Arrays.copyOf(sparseVals, keys.length);
+            int i = size - 1;
+            int j = sorted.length - 1;
+            for(int k = count - 1; j >= 0; k--)
+            {
+                if(i >= 0 && keys[i] > sorted[j].getID())
+                {
+                    keys[k] = keys[i];
+                    vals[k] = vals[i--];
+                } else
+                {
+                    keys[k] = sorted[j].getID();
+                    vals[k] = sorted[j--];
+                }
+            }
+
+            sparseKeys = keys;
+            sparseVals = vals;
+            size = count;
+        }
+    }
+
+    public DBEntry<T> remove(int id)
+    {
+        if(id < 0) return null;
+
+        DBEntry<T> removed;
+
+        if(dense != null)
+        {
+            if(id >= denseTop || (removed = dense[id]) == null) return null;
+            dense[id] = null;
+            size--;
+            if(id < firstFree) firstFree = id;
+            while(denseTop > 0 && dense[denseTop - 1] == null) denseTop--;
+            if(shouldBeSparse(size, denseTop - 1)) toSparse();
+        } else
+        {
+            int idx = Arrays.binarySearch(sparseKeys, 0, size, id);
+            if(idx < 0) return null;
+            removed = sparseVals[idx];
+            System.arraycopy(sparseKeys, idx + 1, sparseKeys, idx, size - idx - 1);
+            System.arraycopy(sparseVals, idx + 1, sparseVals, idx, size - idx - 1);
+            sparseVals[--size] = null;
+            if(size <= 0 || shouldBeDense(size, sparseKeys[size - 1])) toDense();
+        }
+
+        return removed;
+    }
+
+    public void clear()
+    {
+        dense = newArray(MIN_DENSE_SIZE);
+        denseTop = 0;
+        firstFree = 0;
+        sparseKeys = null;
+        sparseVals = null;
+        size = 0;
+    }
+
+    /**
+     * Lowest ID not currently in use
+     */
+    public int nextFreeID()
+    {
+        if(dense != null) return firstFree;
+
+        // IDs are unique and ascending so (key - index) never decreases. Bisect for the first index where they diverge
+        int lo = 0;
+        int hi = size;
+        while(lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if(sparseKeys[mid] > mid)
+            {
+                hi = mid;
+            } else
+            {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Copies all entries into a new array in ascending ID order
+     */
+    public DBEntry<T>[] toArray()
+    {
+        if(dense == null) return Arrays.copyOf(sparseVals, size);
+
+        DBEntry<T>[] out = newArray(size);
+        int n = 0;
+        for(int i = 0; i < denseTop && n < size; i++)
+        {
+            if(dense[i] != null) out[n++] = dense[i];
+        }
+        return out;
+    }
+
+    private void putSparse(DBEntry<T> entry)
+    {
+        int id = entry.getID();
+        int idx = size > 0 && sparseKeys[size - 1] < id ? size : -Arrays.binarySearch(sparseKeys, 0, size, id) - 1;
+
+        if(size >= sparseKeys.length)
+        {
+            int cap = Math.max(MIN_DENSE_SIZE, sparseKeys.length + (sparseKeys.length >> 1));
+            sparseKeys = Arrays.copyOf(sparseKeys, cap);
+            sparseVals = Arrays.copyOf(sparseVals, cap);
+        }
+
+        System.arraycopy(sparseKeys, idx, sparseKeys, idx + 1, size - idx);
+        System.arraycopy(sparseVals, idx, sparseVals, idx + 1, size - idx);
+        sparseKeys[idx] = id;
+        sparseVals[idx] = entry;
+        size++;
+    }
+
+    private void advanceFirstFree()
+    {
+        while(firstFree < denseTop && dense[firstFree] != null) firstFree++;
+    }
+
+    private void toSparse()
+    {
+        DBEntry<T>[] vals = toArray();
+        int[] keys = new int[Math.max(MIN_DENSE_SIZE, vals.length + 1)];
+        for(int i = 0; i < vals.length; i++) keys[i] = vals[i].getID();
+
+        sparseKeys = keys;
+        sparseVals = Arrays.copyOf(vals, keys.length);
+        dense = null;
+        denseTop = 0;
+        firstFree = 0;
+    }
+
+    private void toDense()
+    {
+        int top = size > 0 ? sparseKeys[size - 1] + 1 : 0;
+        DBEntry<T>[] arr = newArray(Math.max(MIN_DENSE_SIZE, top));
+        for(int i = 0; i < size; i++) arr[sparseKeys[i]] = sparseVals[i];
+
+        dense = arr;
+        denseTop = top;
+        firstFree = 0;
+        advanceFirstFree();
+        sparseKeys = null;
+        sparseVals = null;
+    }
+
+    /**
+     * Whether a sparse store holding {@code count} entries with the given highest ID should switch to the direct indexed
+     * array. See {@link SimpleDatabase#SPARSE_RATIO} and {@link SimpleDatabase#CACHE_MAX_SIZE}
+     */
+    private static boolean shouldBeDense(int count, int maxID)
+    {
+        if(maxID < MIN_DENSE_SIZE) return true;
+        return maxID < SimpleDatabase.CACHE_MAX_SIZE && count >= SimpleDatabase.SPARSE_RATIO * (maxID + 1);
+    }
+    
+    /**
+     * Whether a dense store holding {@code count} entries with the given highest ID should fall back to sparse storage.
+     * The density has to drop {@link #HYSTERESIS} times below {@link SimpleDatabase#SPARSE_RATIO} first so a database
+     * sitting on the threshold doesn't convert back and forth. Every conversion is O(n), but with this gap it takes at
+     * least O(n) further edits before the next one so the cost stays amortised O(1) per edit.
+     */
+    private static boolean shouldBeSparse(int count, int maxID)
+    {
+        if(maxID < MIN_DENSE_SIZE) return false;
+        return maxID >= SimpleDatabase.CACHE_MAX_SIZE || count * HYSTERESIS < SimpleDatabase.SPARSE_RATIO * (maxID + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> DBEntry<T>[] newArray(int length)
+    {
+        return (DBEntry<T>[])new DBEntry[length];
+    }
+}
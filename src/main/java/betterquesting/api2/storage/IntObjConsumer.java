@@ -0,0 +1,8 @@
+package betterquesting.api2.storage;
+
+// Same as BiConsumer but without boxing the ID
+@FunctionalInterface
+public interface IntObjConsumer<T>
+{
+    void accept(int id, T value);
+}
@@ -5,51 +5,34 @@ import java.util.*;
 public abstract class SimpleDatabase<T> implements IDatabase<T>
 {
     /**
-     * If the cache size would somehow exceed 24MB (on 64bit machines) we stop.
+     * If the dense array would somehow exceed 24MB (on 64bit machines) we fall back to sparse storage.
      */
     public static int CACHE_MAX_SIZE = 24 * 1024 * 1024 / 8;
     /**
-     * If {@code mapDB.size < SPARSE_RATIO * (mapDB.lastKey() - mapDB.firstKey())} the database will be considered
-     * sparse and an cache array won't be built to save memory.
+     * If {@code size < SPARSE_RATIO * (highestID + 1)} the database will be considered sparse and entries won't be
+     * stored in an array indexed by ID to save memory.
      * <p>
-     * Under this sparsity a 10k element database will roughly result in a 0.5MB cache which is more than enough reasonable.
+     * Under this sparsity a 10k element database will roughly result in a 0.5MB array which is more than enough reasonable.
      */
     public static double SPARSE_RATIO = 0.15d;
 
-    final TreeMap<Integer, T> mapDB = new TreeMap<>();
-
-    private final BitSet idMap = new BitSet();
-    private LookupLogicType type = null;
-    private LookupLogic<T> logic = null;
-
-    private LookupLogic<T> getLookupLogic()
-    {
-        if (type != null) return logic;
-        LookupLogicType newType = LookupLogicType.determine(this);
-        type = newType;
-        logic = newType.get(this);
-        return logic;
-    }
-
-    private void updateLookupLogic()
-    {
-        if(type == null) return;
-        LookupLogicType newType = LookupLogicType.determine(this);
-        if(newType != type)
-        {
-            type = null;
-            logic = null;
-        }
-        else
-        {
-            logic.onDataChange();
-        }
-    }
+    private final IntEntryStore<T> store = new IntEntryStore<>();
+    /**
+     * Reverse index keyed by value identity. Holds the lowest ID a value is stored under, so if a value is ever added
+     * more than once this map will be smaller than {@link #store}.
+     */
+    private final IdentityHashMap<T, Integer> idLookup = new IdentityHashMap<>();
+    private final EntryListCache<T> refCache = new EntryListCache<>();
+    /**
+     * Last published read only view. Cleared on every edit and rebuilt on demand so readers can skip the lock entirely
+     * while the database isn't changing.
+     */
+    private volatile DBSnapshot<T> snapshot = null;
 
     @Override
     public synchronized int nextID()
     {
-        return idMap.nextClearBit(0);
+        return store.nextFreeID();
     }
 
     @Override
@@ -63,11 +46,15 @@ public abstract class SimpleDatabase<T> implements IDatabase<T>
             throw new IllegalArgumentException("ID cannot be negative");
         } else
         {
-            if(mapDB.putIfAbsent(id, value) == null)
+            if(store.get(id) == null)
             {
-                idMap.set(id);
-                updateLookupLogic();
-                return new DBEntry<>(id, value);
+                DBEntry<T> entry = new DBEntry<>(id, value);
+                store.put(entry);
+                Integer prev = idLookup.get(value);
+                if(prev == null || prev > id) idLookup.put(value, id);
+                refCache.onAdd(entry);
+                snapshot = null;
+                return entry;
             } else
             {
                 throw new IllegalArgumentException("ID or value is already contained within database");
@@ -75,21 +62,87 @@ public abstract class SimpleDatabase<T> implements IDatabase<T>
         }
     }
 
+    /**
+     * Validates the whole batch before touching anything so either every entry is added or none are. Index upkeep is
+     * done once for the batch and the entry list is rebuilt lazily on the next {@link #getEntries()} call.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void addAll(Map<Integer, T> entries)
+    {
+        if(entries.isEmpty()) return;
+        
+        DBEntry<T>[] batch = new DBEntry[entries.size()];
+        int n = 0;
+        
+        for(Map.Entry<Integer, T> entry : entries.entrySet())
+        {
+            int id = entry.getKey() == null ? -1 : entry.getKey();
+            
+            if(entry.getValue() == null)
+            {
+                throw new NullPointerException("Value cannot be null");
+            } else if(id < 0)
+            {
+                throw new IllegalArgumentException("ID cannot be negative");
+            } else if(store.get(id) != null)
+            {
+                throw new IllegalArgumentException("ID or value is already contained within database");
+            }
+            
+            batch[n++] = new DBEntry<>(id, entry.getValue());
+        }
+        
+        if(!(entries instanceof SortedMap) || ((SortedMap<Integer, T>)entries).comparator() != null) Arrays.sort(batch);
+        store.putAll(batch);
+        
+        for(DBEntry<T> entry : batch)
+        {
+            Integer prev = idLookup.get(entry.getValue());
+            if(prev == null || prev > entry.getID()) idLookup.put(entry.getValue(), entry.getID());
+        }
+        
+        refCache.clear();
+        snapshot = null;
+    }
+
     @Override
     public synchronized boolean removeID(int key)
     {
         if(key < 0) return false;
         
-        if(mapDB.remove(key) != null)
+        DBEntry<T> entry = store.remove(key);
+        
+        if(entry != null)
         {
-            idMap.clear(key);
-            updateLookupLogic();
+            unmapValue(key, entry.getValue());
+            refCache.onRemove(key);
+            snapshot = null;
             return true;
         }
         
         return false;
     }
     
+    private void unmapValue(int key, T value)
+    {
+        Integer mapped = idLookup.get(value);
+        if(mapped == null || mapped != key) return;
+        idLookup.remove(value);
+        
+        if(idLookup.size() < store.size()) // Duplicate values exist. Find the next lowest ID this value is stored under
+        {
+            for(DBEntry<T> entry : store.toArray())
+            {
+                if(entry.getValue() == value)
+                {
+                    idLookup.put(value, entry.getID());
+                    break;
+                }
+            }
+        }
+    }
+    
     @Override
     public synchronized boolean removeValue(T value)
     {
@@ -101,50 +154,122 @@ public abstract class SimpleDatabase<T> implements IDatabase<T>
     {
         if(value == null) return -1;
         
-        for(DBEntry<T> entry : getEntries())
+        Integer id = idLookup.get(value);
+        return id == null ? -1 : id;
+    }
+    
+    @Override
+    public T getValue(int id)
+    {
+        DBSnapshot<T> snap = snapshot;
+        if(snap != null) return snap.getValue(id);
+        
+        synchronized(this)
         {
-            if(entry.getValue() == value) return entry.getID();
+            DBEntry<T> entry = store.get(id);
+            return entry == null ? null : entry.getValue();
         }
-        
-        return -1;
     }
     
     @Override
-    public synchronized T getValue(int id)
+    public int size()
     {
-        if(id < 0 || mapDB.size() <= 0) return null;
-        return mapDB.get(id);
+        DBSnapshot<T> snap = snapshot;
+        if(snap != null) return snap.size();
+        
+        synchronized(this)
+        {
+            return store.size();
+        }
     }
     
     @Override
-    public synchronized int size()
+    public synchronized void reset()
     {
-        return mapDB.size();
+        store.clear();
+        idLookup.clear();
+        refCache.clear();
+        snapshot = null;
     }
     
     @Override
-    public synchronized void reset()
+    public DBSnapshot<T> snapshot()
     {
-        mapDB.clear();
-        idMap.clear();
-        type = null;
-        logic = null;
+        DBSnapshot<T> snap = snapshot;
+        if(snap != null) return snap;
+        
+        synchronized(this)
+        {
+            if(snapshot == null) snapshot = DBSnapshot.ofSorted(store.size() <= 0 ? Collections.emptyList() : refCache.getView(store));
+            return snapshot;
+        }
     }
 
+    /**
+     * Reads from the published snapshot if there is one. Otherwise returns the incrementally maintained entry list without
+     * building a snapshot, so alternating edits and reads stay cheap
+     */
     @Override
-    public synchronized List<DBEntry<T>> getEntries()
+    public List<DBEntry<T>> getEntries()
     {
-        return mapDB.isEmpty() ? Collections.emptyList() : getLookupLogic().getRefCache();
+        DBSnapshot<T> snap = snapshot;
+        if(snap != null) return snap.getEntries();
+        
+        synchronized(this)
+        {
+            return store.size() <= 0 ? Collections.emptyList() : refCache.getView(store);
+        }
     }
 
     /**
-     * First try use array cache.
-     * If memory usage would be too high try use sort merge join if keys is large.
-     * Otherwise look up each key separately via {@link TreeMap#get(Object)}.
+     * Visits the published snapshot if there is one, otherwise every key is looked up under a single lock. The action then
+     * runs while this database is locked, so it mustn't wait on another thread that edits it
+     */
+    @Override
+    public void forEachOf(int[] keys, IntObjConsumer<T> action)
+    {
+        DBSnapshot<T> snap = snapshot;
+        if(snap != null)
+        {
+            snap.forEachOf(keys, action);
+            return;
+        }
+        
+        synchronized(this)
+        {
+            for(int k : keys)
+            {
+                DBEntry<T> entry = store.get(k);
+                if(entry != null) action.accept(k, entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Looks up each key directly in the published snapshot or backing store. No new entries are created.
      */
     @Override
-    public synchronized List<DBEntry<T>> bulkLookup(int... keys)
+    public List<DBEntry<T>> bulkLookup(int... keys)
+    {
+        DBSnapshot<T> snap = snapshot;
+        if(snap != null) return snap.bulkLookup(keys);
+        
+        synchronized(this)
+        {
+            return lockedBulkLookup(keys);
+        }
+    }
+    
+    private List<DBEntry<T>> lockedBulkLookup(int[] keys)
     {
-        return mapDB.isEmpty() || keys.length == 0 ? Collections.emptyList() : getLookupLogic().bulkLookup(keys);
+        if(store.size() <= 0 || keys.length == 0) return Collections.emptyList();
+        
+        List<DBEntry<T>> list = new ArrayList<>(keys.length);
+        for(int k : keys)
+        {
+            DBEntry<T> entry = store.get(k);
+            if(entry != null) list.add(entry);
+        }
+        return list;
     }
 }
@@ -4,6 +4,7 @@ import betterquesting.api.api.QuestingAPI;
 import betterquesting.api.questing.party.IParty;
 import betterquesting.api2.cache.QuestCache;
 import betterquesting.api2.storage.DBEntry;
+import betterquesting.questing.ProgressIndex;
 import betterquesting.questing.party.PartyManager;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.server.MinecraftServer;
@@ -71,12 +72,14 @@ public class ParticipantInfo
     
     public void markDirty(@Nonnull List<Integer> questIDs) // Only marks quests dirty for the immediate participating player
     {
-         QuestCache qc = (QuestCache)PLAYER.getExtendedProperties(QuestCache.LOC_QUEST_CACHE.toString());
+        indexProgress(questIDs);
+        QuestCache qc = (QuestCache)PLAYER.getExtendedProperties(QuestCache.LOC_QUEST_CACHE.toString());
         if(qc != null) questIDs.forEach(qc::markQuestDirty);
     }
     
     public void markDirtyParty(@Nonnull List<Integer> questIDs) // Marks quests as dirty for the entire (active) party
     {
+        indexProgress(questIDs);
         if(ACTIVE_PLAYERS.size() <= 0 || questIDs.size() <= 0) return;
         ACTIVE_PLAYERS.forEach((value) -> {
             QuestCache qc = (QuestCache)value.getExtendedProperties(QuestCache.LOC_QUEST_CACHE.toString());
@@ -84,6 +87,12 @@ public class ParticipantInfo
         });
     }
     
+    // Tasks may have written progress for any participant, online or not, and even when nobody has a cache to mark
+    private void indexProgress(@Nonnull List<Integer> questIDs)
+    {
+        for(UUID uuid : ALL_UUIDS) questIDs.forEach((id) -> ProgressIndex.INSTANCE.add(uuid, id));
+    }
+    
     @Nonnull
     public int[] getSharedQuests() // Returns an array of all quests which one or more participants have unlocked
     {
@@ -8,6 +8,7 @@ import betterquesting.api.questing.tasks.ITask;
 import betterquesting.api2.cache.QuestCache;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.core.BetterQuesting;
+import betterquesting.questing.ProgressIndex;
 import betterquesting.questing.QuestDatabase;
 import betterquesting.storage.QuestSettings;
 import net.minecraft.entity.player.EntityPlayer;
@@ -203,6 +204,7 @@ public class TileSubmitStation extends TileEntity implements IFluidHandler, ISid
 		{
 			remainder = t.submitFluid(owner, getQuest(), fluid);
 		    consumed = remainder != null? amount - remainder.amount : amount;
+		    if(consumed > 0) ProgressIndex.INSTANCE.addParty(owner, questID); // The owner may be offline with no cache to mark dirty
 		    
 			if(t.isComplete(owner))
 			{
@@ -274,6 +276,7 @@ public class TileSubmitStation extends TileEntity implements IFluidHandler, ISid
 				if(t.canAcceptItem(owner, getQuest(), inStack))
 				{
 					itemStack[SLOT_INPUT] = t.submitItem(owner, getQuest(), inStack); // Even if this returns an invalid item for submission it will be moved next pass
+					ProgressIndex.INSTANCE.addParty(owner, q.getID()); // The owner may be offline with no cache to mark dirty
 					
 					if(t.isComplete(owner))
 					{
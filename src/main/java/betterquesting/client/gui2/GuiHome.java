@@ -6,7 +6,6 @@ import betterquesting.api.properties.NativeProps;
 import betterquesting.api.questing.party.IParty;
 import betterquesting.api.storage.BQ_Settings;
 import betterquesting.api.utils.JsonHelper;
-import betterquesting.api.utils.NBTConverter;
 import betterquesting.api2.client.gui.GuiScreenCanvas;
 import betterquesting.api2.client.gui.controls.IPanelButton;
 import betterquesting.api2.client.gui.controls.PanelButton;
@@ -181,7 +180,7 @@ public class GuiHome extends GuiScreenCanvas implements IPEventListener
 					boolean hardMode = QuestSettings.INSTANCE.getProperty(NativeProps.HARDCORE);
 					
 					NBTTagList jsonP = QuestDatabase.INSTANCE.writeProgressToNBT(new NBTTagList(), null);
-					NBTTagCompound j1 = NBTConverter.JSONtoNBT_Object(JsonHelper.ReadFromFile(qFile), new NBTTagCompound(), true);
+					NBTTagCompound j1 = JsonHelper.ReadNBTFromFile(qFile, true);
 					QuestSettings.INSTANCE.readFromNBT(j1.getCompoundTag("questSettings"));
 					QuestDatabase.INSTANCE.readFromNBT(j1.getTagList("questDatabase", 10), false);
 					QuestLineDatabase.INSTANCE.readFromNBT(j1.getTagList("questLines", 10), false);
@@ -48,6 +48,7 @@ import betterquesting.handlers.ConfigHandler;
 import betterquesting.network.handlers.NetQuestAction;
 import betterquesting.questing.QuestDatabase;
 import betterquesting.questing.QuestLineDatabase;
+import gnu.trove.set.hash.TIntHashSet;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraftforge.common.config.Configuration;
@@ -455,6 +456,7 @@ public class GuiQuestLines extends GuiScreenCanvas implements IPEventListener, I
         List<DBEntry<IQuestLine>> lineList = QuestLineDatabase.INSTANCE.getSortedEntries();
         this.visChapters.clear();
         UUID playerID = QuestingAPI.getQuestingUUID(mc.thePlayer);
+        TIntHashSet shownQuests = QuestCache.getShownQuests(playerID, mc.thePlayer);
         
         for(DBEntry<IQuestLine> dbEntry : lineList)
         {
@@ -489,7 +491,7 @@ public class GuiQuestLines extends GuiScreenCanvas implements IPEventListener, I
                 if(!pendingClaim && q.canClaimBasically(mc.thePlayer)) pendingClaim = true;
                 if(!unlocked && q.isUnlocked(playerID)) unlocked = true;
                 if(!complete && q.isComplete(playerID)) complete = true;
-                if(!show && QuestCache.isQuestShown(q, playerID, mc.thePlayer)) show = true;
+                if(!show && shownQuests.contains(qID.getID())) show = true;
                 if(unlocked && complete && show && pendingClaim && !allComplete) break;
             }
         
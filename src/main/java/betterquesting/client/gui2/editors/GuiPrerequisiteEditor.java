@@ -23,6 +23,7 @@ import betterquesting.api2.client.gui.panels.content.PanelLine;
 import betterquesting.api2.client.gui.panels.content.PanelTextBox;
 import betterquesting.api2.client.gui.panels.lists.CanvasQuestDatabase;
 import betterquesting.api2.client.gui.panels.lists.CanvasScrolling;
+import betterquesting.api2.client.gui.popups.PopMessage;
 import betterquesting.api2.client.gui.themes.presets.PresetColor;
 import betterquesting.api2.client.gui.themes.presets.PresetIcon;
 import betterquesting.api2.client.gui.themes.presets.PresetLine;
@@ -206,8 +207,14 @@ public class GuiPrerequisiteEditor extends GuiScreenCanvas implements IPEventLis
         } else if(btn.getButtonID() == 2 && btn instanceof PanelButtonStorage) // Add
         {
             DBEntry<IQuest> entry = ((PanelButtonStorage<DBEntry<IQuest>>)btn).getStoredValue();
-            addReq(quest, entry.getID());
-            SendChanges();
+            if(closesCycle(entry.getID()))
+            {
+                openPopup(new PopMessage(QuestTranslation.translate("betterquesting.gui.cyclic_requirement"), PresetIcon.ICON_NOTICE.getTexture()));
+            } else
+            {
+                addReq(quest, entry.getID());
+                SendChanges();
+            }
         } else if(btn.getButtonID() == 3 && btn instanceof PanelButtonStorage) // Remove
         {
             DBEntry<IQuest> entry = ((PanelButtonStorage<DBEntry<IQuest>>)btn).getStoredValue();
@@ -263,6 +270,11 @@ public class GuiPrerequisiteEditor extends GuiScreenCanvas implements IPEventLis
         if(hasRemoved) quest.setRequirements(rem);
     }
     
+    private boolean closesCycle(int id)
+    {
+        return id == questID || QuestDatabase.INSTANCE.getGraph().requires(id, questID);
+    }
+    
     private void addReq(IQuest quest, int id)
     {
         if(containsReq(quest, id)) return;
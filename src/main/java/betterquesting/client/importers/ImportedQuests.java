@@ -4,13 +4,16 @@ import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.IQuestDatabase;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.storage.SimpleDatabase;
+import betterquesting.core.BetterQuesting;
 import betterquesting.questing.QuestInstance;
+import gnu.trove.set.hash.TIntHashSet;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.UUID;
 
 public class ImportedQuests extends SimpleDatabase<IQuest> implements IQuestDatabase
@@ -57,6 +60,9 @@ public class ImportedQuests extends SimpleDatabase<IQuest> implements IQuestData
 	{
 		if(!merge) this.reset();
 		
+		TreeMap<Integer, IQuest> added = new TreeMap<>();
+		TIntHashSet read = new TIntHashSet();
+		
 		for(int i = 0; i < nbt.tagCount(); i++)
 		{
 			NBTTagCompound qTag = nbt.getCompoundTagAt(i);
@@ -64,10 +70,17 @@ public class ImportedQuests extends SimpleDatabase<IQuest> implements IQuestData
 			int qID = qTag.hasKey("questID", 99) ? qTag.getInteger("questID") : -1;
 			if(qID < 0) continue;
 			
+			if(!read.add(qID)) // Later entries replace earlier ones, as they always have
+			{
+				BetterQuesting.logger.warn("Duplicate quest ID " + qID + " in imported quests. Using the last one");
+			}
+			
 			IQuest quest = getValue(qID);
-			quest = quest != null? quest : this.createNew(qID);
+			if(quest == null) added.put(qID, quest = new QuestInstance());
 			quest.readFromNBT(qTag);
 		}
+		
+		this.addAll(added);
 	}
 	
 	@Override
@@ -2,13 +2,19 @@ package betterquesting.client.toolbox.tools;
 
 import betterquesting.api.client.toolbox.IToolboxTool;
 import betterquesting.api.questing.IQuest;
+import betterquesting.api2.client.gui.IScene;
 import betterquesting.api2.client.gui.controls.PanelButtonQuest;
 import betterquesting.api2.client.gui.misc.GuiRectangle;
 import betterquesting.api2.client.gui.panels.lists.CanvasQuestLine;
+import betterquesting.api2.client.gui.popups.PopMessage;
 import betterquesting.api2.client.gui.themes.presets.PresetColor;
+import betterquesting.api2.client.gui.themes.presets.PresetIcon;
 import betterquesting.api2.client.gui.themes.presets.PresetLine;
+import betterquesting.api2.utils.QuestTranslation;
 import betterquesting.client.gui2.editors.designer.PanelToolController;
 import betterquesting.network.handlers.NetQuestEdit;
+import betterquesting.questing.QuestDatabase;
+import net.minecraft.client.Minecraft;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 
@@ -113,6 +119,7 @@ public class ToolboxToolLink implements IToolboxTool
 			{
 				IQuest q2 = b2.getStoredValue().getValue();
 				boolean mod2 = false;
+				boolean cyclic = false;
                 
                 NBTTagList dataList = new NBTTagList();
     
@@ -124,7 +131,13 @@ public class ToolboxToolLink implements IToolboxTool
                     // Don't have to worry about the lines anymore. The panel is getting refereshed anyway
                     if(!containsReq(q2, b1.getStoredValue().getID()) && !containsReq(q1, b2.getStoredValue().getID()))
                     {
-                        mod2 = addReq(q2, b1.getStoredValue().getID()) || mod2;
+                        if(closesCycle(b2.getStoredValue().getID(), b1.getStoredValue().getID()))
+                        {
+                            cyclic = true;
+                        } else
+                        {
+                            mod2 = addReq(q2, b1.getStoredValue().getID()) || mod2;
+                        }
                     } else
                     {
                         mod2 = removeReq(q2, b1.getStoredValue().getID()) || mod2;
@@ -152,6 +165,11 @@ public class ToolboxToolLink implements IToolboxTool
                 payload.setTag("data", dataList);
                 payload.setInteger("action", 0);
                 NetQuestEdit.sendEdit(payload);
+                
+                if(cyclic && Minecraft.getMinecraft().currentScreen instanceof IScene)
+                {
+                    ((IScene)Minecraft.getMinecraft().currentScreen).openPopup(new PopMessage(QuestTranslation.translate("betterquesting.gui.cyclic_requirement"), PresetIcon.ICON_NOTICE.getTexture()));
+                }
 				
 				linking.clear();
                 return true;
@@ -223,6 +241,11 @@ public class ToolboxToolLink implements IToolboxTool
         return hasRemoved;
     }
     
+    private boolean closesCycle(int questID, int id)
+    {
+        return id == questID || QuestDatabase.INSTANCE.getGraph().requires(id, questID);
+    }
+    
     private boolean addReq(IQuest quest, int id)
     {
         if(containsReq(quest, id)) return false;
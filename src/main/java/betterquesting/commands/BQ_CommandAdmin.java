@@ -27,6 +27,7 @@ public class BQ_CommandAdmin extends CommandBase
 		coms.add(new QuestCommandCheckCompletion());
 		coms.add(new QuestCommandReportAllProgress());
 		coms.add(new QuestCommandCleanupQuestLine());
+		coms.add(new QuestCommandExportProgress());
 	}
 	
 	@Override
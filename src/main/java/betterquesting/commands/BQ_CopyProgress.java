@@ -2,6 +2,7 @@ package betterquesting.commands;
 
 import betterquesting.api.questing.IQuest;
 import betterquesting.api2.storage.DBEntry;
+import betterquesting.handlers.SaveLoadHandler;
 import betterquesting.network.handlers.NetQuestSync;
 import betterquesting.questing.QuestDatabase;
 import com.google.common.collect.Lists;
@@ -76,6 +77,8 @@ public class BQ_CopyProgress extends CommandBase {
             throw new CommandException("Wrong arguments");
         }
 
+        SaveLoadHandler.INSTANCE.ensureProgressLoaded(fromUUID, toUUID);
+
         long current = System.currentTimeMillis();
         List<Integer> ids = new ArrayList<>();
         for(DBEntry<IQuest> questDBEntry : QuestDatabase.INSTANCE.getEntries()) {
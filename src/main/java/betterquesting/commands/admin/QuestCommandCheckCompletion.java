@@ -4,6 +4,7 @@ import betterquesting.api.properties.NativeProps;
 import betterquesting.api.questing.IQuest;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.commands.QuestCommandBase;
+import betterquesting.handlers.SaveLoadHandler;
 import betterquesting.questing.QuestDatabase;
 import betterquesting.storage.NameCache;
 import net.minecraft.command.CommandBase;
@@ -58,6 +59,8 @@ public class QuestCommandCheckCompletion extends QuestCommandBase {
 			throw this.getException(command);
 		}
 
+		SaveLoadHandler.INSTANCE.ensureProgressLoaded(uuid);
+
 		String pName = NameCache.INSTANCE.getName(uuid);
 
 		int id = Integer.parseInt(args[2].trim());
@@ -102,8 +102,7 @@ public class QuestCommandDefaults extends QuestCommandBase
 				
 				NBTTagList jsonP = QuestDatabase.INSTANCE.writeProgressToNBT(new NBTTagList(), null);
 				
-				JsonObject j1 = JsonHelper.ReadFromFile(qFile);
-				NBTTagCompound nbt1 = NBTConverter.JSONtoNBT_Object(j1, new NBTTagCompound(), true);
+				NBTTagCompound nbt1 = JsonHelper.ReadNBTFromFile(qFile, true);
                 
                 ILegacyLoader loader = LegacyLoaderRegistry.getLoader(nbt1.hasKey("format", 8) ? nbt1.getString("format") : "0.0.0");
                 
@@ -114,7 +113,7 @@ public class QuestCommandDefaults extends QuestCommandBase
                     QuestLineDatabase.INSTANCE.readFromNBT(nbt1.getTagList("questLines", 10), false);
                 } else
                 {
-                    loader.readFromJson(j1);
+                    loader.readFromJson(JsonHelper.ReadFromFile(qFile));
                 }
 				
 				QuestDatabase.INSTANCE.readProgressFromNBT(jsonP, false);
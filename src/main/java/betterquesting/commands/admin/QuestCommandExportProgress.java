@@ -0,0 +1,79 @@
+package betterquesting.commands.admin;
+
+import betterquesting.api.storage.BQ_Settings;
+import betterquesting.commands.QuestCommandBase;
+import betterquesting.handlers.SaveLoadHandler;
+import betterquesting.storage.NameCache;
+import betterquesting.storage.PlayerRegistry;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ChatComponentTranslation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class QuestCommandExportProgress extends QuestCommandBase
+{
+	@Override
+	public String getCommand()
+	{
+		return "export_progress";
+	}
+	
+	@Override
+	public String getUsageSuffix()
+	{
+		return "[username|uuid]";
+	}
+	
+	@Override
+	public boolean validArgs(String[] args)
+	{
+		return args.length == 1 || args.length == 2;
+	}
+	
+	@Override
+	public List<String> autoComplete(MinecraftServer server, ICommandSender sender, String[] args)
+	{
+		if(args.length == 2)
+		{
+			return CommandBase.getListOfStringsMatchingLastWord(args, NameCache.INSTANCE.getAllNames().toArray(new String[0]));
+		}
+		
+		return new ArrayList<>();
+	}
+	
+	@Override
+	public void runCommand(MinecraftServer server, CommandBase command, ICommandSender sender, String[] args)
+	{
+		File dir = new File(BQ_Settings.curWorldDir, "exports/progress");
+		
+		if(args.length == 2)
+		{
+			UUID playerID = this.findPlayerID(server, sender, args[1]);
+			if(playerID == null) throw getException(command);
+			
+			SaveLoadHandler.INSTANCE.ensureProgressLoaded(playerID);
+			SaveLoadHandler.INSTANCE.exportPlayerProgress(playerID, dir);
+			sender.addChatMessage(new ChatComponentTranslation("betterquesting.cmd.export_progress.player", NameCache.INSTANCE.getName(playerID), dir.getPath()));
+			return;
+		}
+		
+		SaveLoadHandler.INSTANCE.ensureAllProgressLoaded();
+		int exported = 0;
+		
+		for(int i = 0; i < PlayerRegistry.INSTANCE.size(); i++)
+		{
+			UUID playerID = PlayerRegistry.INSTANCE.getUUID(i);
+			if(playerID == null) continue;
+			
+			SaveLoadHandler.INSTANCE.exportPlayerProgress(playerID, dir);
+			exported++;
+		}
+		
+		sender.addChatMessage(new ChatComponentTranslation("betterquesting.cmd.export_progress.all", exported, dir.getPath()));
+	}
+}
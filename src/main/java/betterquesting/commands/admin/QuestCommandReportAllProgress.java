@@ -4,6 +4,7 @@ import betterquesting.api.properties.NativeProps;
 import betterquesting.api.questing.IQuest;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.commands.QuestCommandBase;
+import betterquesting.handlers.SaveLoadHandler;
 import betterquesting.questing.QuestDatabase;
 import betterquesting.storage.NameCache;
 import net.minecraft.command.CommandBase;
@@ -54,6 +55,8 @@ public class QuestCommandReportAllProgress extends QuestCommandBase {
 			throw this.getException(command);
 		}
 
+		SaveLoadHandler.INSTANCE.ensureProgressLoaded(uuid);
+
 		sender.addChatMessage(new ChatComponentTranslation("betterquesting.cmd.check_all", NameCache.INSTANCE.getName(uuid)));
 
 		for (DBEntry<IQuest> entry : QuestDatabase.INSTANCE.getEntries()) {
@@ -4,6 +4,7 @@ import betterquesting.api.properties.NativeProps;
 import betterquesting.api.questing.IQuest;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.commands.QuestCommandBase;
+import betterquesting.handlers.SaveLoadHandler;
 import betterquesting.network.handlers.NetQuestSync;
 import betterquesting.questing.QuestDatabase;
 import betterquesting.storage.NameCache;
@@ -76,6 +77,9 @@ public class QuestCommandReset extends QuestCommandBase
 			}
 		}
 		
+		if(uuid == null) SaveLoadHandler.INSTANCE.ensureAllProgressLoaded(); // Everyone's progress is being reset
+		else SaveLoadHandler.INSTANCE.ensureProgressLoaded(uuid);
+		
 		String pName = uuid == null? "NULL" : NameCache.INSTANCE.getName(uuid);
         EntityPlayerMP player = null;
         if(uuid != null)
@@ -15,6 +15,7 @@ import betterquesting.questing.rewards.RewardRegistry;
 import betterquesting.questing.tasks.TaskRegistry;
 import betterquesting.storage.LifeDatabase;
 import betterquesting.storage.NameCache;
+import betterquesting.storage.PlayerRegistry;
 import betterquesting.storage.QuestSettings;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
@@ -38,6 +39,7 @@ public class ExpansionLoader
 		
 		QuestingAPI.registerAPI(ApiReference.SETTINGS, QuestSettings.INSTANCE);
 		QuestingAPI.registerAPI(ApiReference.NAME_CACHE, NameCache.INSTANCE);
+		QuestingAPI.registerAPI(ApiReference.PLAYER_REG, PlayerRegistry.INSTANCE);
 		
 		QuestingAPI.registerAPI(ApiReference.CREATIVE_TAB, BetterQuesting.tabQuesting);
 	}
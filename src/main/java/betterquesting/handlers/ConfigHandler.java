@@ -24,6 +24,13 @@ public class ConfigHandler
 		BQ_Settings.useBookmark = config.getBoolean("Use Quest Bookmark", Configuration.CATEGORY_GENERAL, true, "Jumps the user to the last opened quest");
 		BQ_Settings.guiWidth = config.getInt("Max GUI Width", Configuration.CATEGORY_GENERAL, -1, -1, Integer.MAX_VALUE, "Clamps the max UI width (-1 to disable)");
 		BQ_Settings.guiHeight = config.getInt("Max GUI Height", Configuration.CATEGORY_GENERAL, -1, -1, Integer.MAX_VALUE, "Clamps the max UI height (-1 to disable)");
+		BQ_Settings.cacheRefreshInterval = config.getInt("Quest Cache Refresh Interval", Configuration.CATEGORY_GENERAL, 1200, 0, Integer.MAX_VALUE, "Ticks between full rebuilds of each player's quest cache. Changes are applied as they happen so this is only a consistency check (0 to disable)");
+		BQ_Settings.questCheckInterval = config.getInt("Quest Check Interval", Configuration.CATEGORY_GENERAL, 200, 0, Integer.MAX_VALUE, "Ticks between checks of every active quest for completion. Quests are otherwise checked when their progress changes (0 to disable)");
+		BQ_Settings.binaryProgress = config.getBoolean("Binary Progress Files", Configuration.CATEGORY_GENERAL, false, "Saves player progress as compressed NBT instead of JSON. Existing files are converted on the next save. Use '/bq_admin export_progress' to get JSON copies for debugging");
+		BQ_Settings.lazyProgress = config.getBoolean("Lazy Progress Loading", Configuration.CATEGORY_GENERAL, false, "Loads a player's progress when they log in or a command needs it instead of loading everyone at startup. Offline players are unloaded again once idle. Progress in global quests always stays loaded. Applies when the world is next loaded");
+		BQ_Settings.progressUnloadDelay = config.getInt("Progress Unload Delay", Configuration.CATEGORY_GENERAL, 30, 1, 10080, "Minutes an offline player's progress stays loaded before it is saved and unloaded when lazy progress loading is on. Players stay loaded while anyone in their party is online");
+		BQ_Settings.verifyTaskCounts = config.getBoolean("Verify Task Counters", Configuration.CATEGORY_GENERAL, false, "Cross-checks the memoised task completion counts against a full scan of every task and logs any mismatch. For debugging task expansions only");
+		BQ_Settings.tickBudget = config.getInt("Quest Update Budget", Configuration.CATEGORY_GENERAL, 5, 0, 50, "Milliseconds per tick that player quest updates may use before the rest is deferred to the next tick (0 for no limit)");
 		BQ_Settings.textWidthCorrection = config.getFloat("Text Width Correction", Configuration.CATEGORY_GENERAL, 1F, 0.01F, 10.0F, "Correcting the width of split text");
 		
 		BQ_Settings.scrollMultiplier = config.getFloat("Scroll multiplier", Configuration.CATEGORY_GENERAL, 1F, 0F, 10F, "Scrolling multiplier");
@@ -13,7 +13,7 @@ import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.party.IParty;
 import betterquesting.api.storage.BQ_Settings;
 import betterquesting.api2.cache.QuestCache;
-import betterquesting.api2.cache.QuestCache.QResetTime;
+import betterquesting.api2.cache.ResetScheduler;
 import betterquesting.api2.client.gui.GuiScreenTest;
 import betterquesting.api2.client.gui.themes.gui_args.GArgsNone;
 import betterquesting.api2.client.gui.themes.presets.PresetGUIs;
@@ -28,10 +28,12 @@ import betterquesting.network.handlers.NetNameSync;
 import betterquesting.network.handlers.NetNotices;
 import betterquesting.network.handlers.NetQuestSync;
 import betterquesting.questing.QuestDatabase;
+import betterquesting.questing.QuestStateMemo;
 import betterquesting.questing.party.PartyInvitations;
 import betterquesting.questing.party.PartyManager;
 import betterquesting.storage.LifeDatabase;
 import betterquesting.storage.NameCache;
+import betterquesting.storage.PlayerRegistry;
 import betterquesting.storage.QuestSettings;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -67,6 +69,7 @@ import org.apache.commons.lang3.Validate;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -130,96 +133,68 @@ public class EventHandler
         }
     }
 	
-	@SubscribeEvent
-	public void onLivingUpdate(BQLivingUpdateEvent event)
+	/**
+	 * Once per second quest update of a player, run by the {@link PlayerUpdateScheduler}
+	 * @param pollAll Check every active quest for completion instead of only those with pending checks
+	 * @param fullRefresh Rebuild the player's quest cache from scratch
+	 */
+	static void updatePlayer(EntityPlayerMP player, boolean pollAll, boolean fullRefresh)
 	{
-		if(event.entityLiving.worldObj.isRemote) return;
-		if(!(event.entityLiving instanceof EntityPlayerMP)) return;
-        if(event.entityLiving.ticksExisted%20 != 0) return; // Only triggers once per second
-
-        EntityPlayerMP player = (EntityPlayerMP)event.entityLiving;
         QuestCache qc = (QuestCache)player.getExtendedProperties(QuestCache.LOC_QUEST_CACHE.toString());
         boolean editMode = QuestSettings.INSTANCE.getProperty(NativeProps.EDIT_MODE);
 
         if(qc == null) return;
 
-        List<DBEntry<IQuest>> activeQuests = QuestDatabase.INSTANCE.bulkLookup(qc.getActiveQuests());
-        List<DBEntry<IQuest>> pendingAutoClaims = QuestDatabase.INSTANCE.bulkLookup(qc.getPendingAutoClaims());
-        QResetTime[] pendingResets = qc.getScheduledResets();
+        int[] activeQuests = qc.getActiveQuests();
+        int[] pendingAutoClaims = qc.getPendingAutoClaims();
 
         UUID uuid = QuestingAPI.getQuestingUUID(player);
-        boolean refreshCache = false;
 
-        if(!editMode && player.ticksExisted%60 == 0) // Passive quest state check every 3 seconds
+        // Quests are checked when their progress changes or they become active. Polling every active quest is only a fallback
+        int[] pendingChecks = editMode ? new int[0] : qc.pollCompletionChecks(); // Left queued until edit mode is turned off
+
+        if(!editMode && (pollAll || pendingChecks.length > 0))
         {
+            if(pollAll) QuestStateMemo.INSTANCE.invalidatePlayer(uuid); // Also the fallback for tasks that change progress without marking their quest dirty
             List<Integer> com = new ArrayList<>();
 
-            for(DBEntry<IQuest> quest : activeQuests)
+            for(int questID : pollAll ? activeQuests : pendingChecks)
             {
-                if(!quest.getValue().isUnlocked(uuid)) continue; // Although it IS active, it cannot be completed yet
+                if(!pollAll && Arrays.binarySearch(activeQuests, questID) < 0) continue;
+                IQuest quest = QuestDatabase.INSTANCE.getValue(questID);
+                if(quest == null || !quest.isUnlocked(uuid)) continue; // Although it IS active, it cannot be completed yet
 
-                if(quest.getValue().canSubmit(player)) quest.getValue().update(player);
+                if(quest.canSubmit(player)) quest.update(player);
 
-                if(quest.getValue().isComplete(uuid) && !quest.getValue().canSubmit(player))
+                if(quest.isComplete(uuid) && !quest.canSubmit(player))
                 {
-                    refreshCache = true;
-                    qc.markQuestDirty(quest.getID());
+                    qc.markQuestDirty(questID);
 
-                    com.add(quest.getID());
-                    if(!quest.getValue().getProperty(NativeProps.SILENT)) postPresetNotice(quest.getValue(), player, 2);
+                    com.add(questID);
+                    if(!quest.getProperty(NativeProps.SILENT)) postPresetNotice(quest, player, 2);
                 }
             }
 
             MinecraftForge.EVENT_BUS.post(new QuestEvent(Type.COMPLETED, uuid, com));
         }
 
-        if(!editMode && MinecraftServer.getServer() != null) // Repeatable quest resets
-        {
-            List<Integer> res = new ArrayList<>();
-            long totalTime = System.currentTimeMillis();
-            
-            for(QResetTime rTime : pendingResets)
-            {
-                IQuest entry = QuestDatabase.INSTANCE.getValue(rTime.questID);
-
-                if(totalTime >= rTime.time && !entry.canSubmit(player)) // REEEEEEEEEset
-                {
-                    if(entry.getProperty(NativeProps.GLOBAL))
-                    {
-                        entry.resetUser(null, false);
-                    } else
-                    {
-                        entry.resetUser(uuid, false);
-                    }
-
-                    refreshCache = true;
-                    qc.markQuestDirty(rTime.questID);
-                    res.add(rTime.questID);
-                    if(!entry.getProperty(NativeProps.SILENT)) postPresetNotice(entry, player, 1);
-                } else break; // Entries are sorted by time so we fail fast and skip checking the others
-            }
-
-            MinecraftForge.EVENT_BUS.post(new QuestEvent(Type.RESET, uuid, res));
-        }
-
         if(!editMode)
         {
-            for(DBEntry<IQuest> entry : pendingAutoClaims) // Auto claims
+            for(int questID : pendingAutoClaims) // Auto claims
             {
-                if(entry.getValue().canClaim(player))
+                IQuest quest = QuestDatabase.INSTANCE.getValue(questID);
+                if(quest != null && quest.canClaim(player))
                 {
-                    entry.getValue().claimReward(player);
-                    refreshCache = true;
-                    qc.markQuestDirty(entry.getID());
+                    quest.claimReward(player);
+                    qc.markQuestDirty(questID);
                     // Not going to notify of auto-claims anymore. Kinda pointless if they're already being pinged for completion
                 }
             }
         }
 
-        if(refreshCache || player.ticksExisted % 200 == 0) // Refresh the cache if something changed or every 10 seconds
-        {
-            qc.updateCache(player);
-        }
+        // Quests report their own state changes to the cache. The periodic full rebuild is only a consistency check
+        if(fullRefresh) qc.markFullRefresh();
+        qc.processChanges(player);
 
         if(qc.getDirtyQuests().length > 0) NetQuestSync.sendSync(player, qc.getDirtyQuests(), false, true);
         qc.cleanAllQuests();
@@ -284,6 +259,13 @@ public class EventHandler
 		if(event.player.worldObj.isRemote || MinecraftServer.getServer() == null || !(event.player instanceof EntityPlayerMP)) return;
 
 		EntityPlayerMP mpPlayer = (EntityPlayerMP)event.player;
+		UUID questingUUID = QuestingAPI.getQuestingUUID(mpPlayer);
+		PlayerRegistry.INSTANCE.getIndex(questingUUID);
+
+		// The whole party is loaded since tasks and party syncs read each other's progress
+		DBEntry<IParty> party = PartyManager.INSTANCE.getParty(questingUUID);
+		if(party != null) SaveLoadHandler.INSTANCE.ensureProgressLoaded(party.getValue().getMembers());
+		else SaveLoadHandler.INSTANCE.ensureProgressLoaded(questingUUID);
 
 		if(BetterQuesting.proxy.isClient() && !MinecraftServer.getServer().isDedicatedServer() && MinecraftServer.getServer().getServerOwner().equals(event.player.getGameProfile().getName()))
 		{
@@ -293,12 +275,21 @@ public class EventHandler
 
         NetBulkSync.sendReset(mpPlayer, true, true);
 
-        UUID questingUUID = QuestingAPI.getQuestingUUID(mpPlayer);
-        DBEntry<IParty> party = PartyManager.INSTANCE.getParty(questingUUID);
         if (party != null)
             PartyManager.SyncPartyQuests(party.getValue(), false);
 	}
 
+	@SubscribeEvent
+	public void onPlayerLeave(PlayerEvent.PlayerLoggedOutEvent event)
+	{
+		if(event.player.worldObj.isRemote || !(event.player instanceof EntityPlayerMP)) return;
+		
+		UUID uuid = QuestingAPI.getQuestingUUID(event.player);
+		QuestCache.releasePlayer(uuid);
+		QuestStateMemo.INSTANCE.releasePlayer(uuid);
+		PlayerUpdateScheduler.INSTANCE.releasePlayer(uuid);
+	}
+	
 	@SubscribeEvent
 	public void onPlayerRespawn(PlayerRespawnEvent event)
 	{
@@ -468,15 +459,56 @@ public class EventHandler
         }
 
         if(server.getTickCounter() % 60 == 0) PartyInvitations.INSTANCE.cleanExpired();
+
+        long now = System.currentTimeMillis();
+        if(ResetScheduler.INSTANCE.getNextDue() <= now && !QuestSettings.INSTANCE.getProperty(NativeProps.EDIT_MODE)) fireResets(server, now);
         
-        // === FIX FOR OnLivingUpdate FIRING MULTIPLE TIMES PER TICK ===
         //noinspection unchecked
-        for(EntityPlayerMP player : (List<EntityPlayerMP>)server.getConfigurationManager().playerEntityList)
+        List<EntityPlayerMP> players = (List<EntityPlayerMP>)server.getConfigurationManager().playerEntityList;
+        PlayerUpdateScheduler.INSTANCE.onServerTick(server, players);
+        if(server.getTickCounter() % 1200 == 0) SaveLoadHandler.INSTANCE.unloadIdleProgress(players);
+        
+        // === FIX FOR OnLivingUpdate FIRING MULTIPLE TIMES PER TICK ===
+        // Our own updates are dispatched above. This is still posted for expansions listening to it
+        for(EntityPlayerMP player : players)
         {
             MinecraftForge.EVENT_BUS.post(new BQLivingUpdateEvent(player));
         }
     }
 
+    // Repeatable quest resets. Only players still online are reset here, anyone else is rescheduled when their cache is rebuilt on login
+    private static void fireResets(MinecraftServer server, long now)
+    {
+        for(ResetScheduler.Entry due : ResetScheduler.INSTANCE.pollDue(now))
+        {
+            EntityPlayerMP player = null;
+            for(Object o : server.getConfigurationManager().playerEntityList)
+            {
+                if(due.uuid.equals(QuestingAPI.getQuestingUUID((EntityPlayerMP)o)))
+                {
+                    player = (EntityPlayerMP)o;
+                    break;
+                }
+            }
+
+            IQuest entry = QuestDatabase.INSTANCE.getValue(due.questID);
+            if(player == null || entry == null || entry.canSubmit(player)) continue; // Offline, deleted or already reset
+
+            if(entry.getProperty(NativeProps.GLOBAL))
+            {
+                entry.resetUser(null, false);
+            } else
+            {
+                entry.resetUser(due.uuid, false);
+            }
+
+            QuestCache qc = (QuestCache)player.getExtendedProperties(QuestCache.LOC_QUEST_CACHE.toString());
+            if(qc != null) qc.markQuestDirty(due.questID);
+            MinecraftForge.EVENT_BUS.post(new QuestEvent(Type.RESET, due.uuid, due.questID));
+            if(!entry.getProperty(NativeProps.SILENT)) postPresetNotice(entry, player, 1);
+        }
+    }
+
     @SubscribeEvent
     public void onMarkDirtyPlayer(MarkDirtyPlayerEvent event) {
         SaveLoadHandler.INSTANCE.addDirtyPlayers(event.getDirtyPlayerIDs());
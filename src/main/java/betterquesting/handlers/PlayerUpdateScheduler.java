@@ -0,0 +1,108 @@
+package betterquesting.handlers;
+
+import betterquesting.api.api.QuestingAPI;
+import betterquesting.api.storage.BQ_Settings;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Spreads the once per second quest updates of online players evenly across ticks instead of running everyone whose
+ * login happened to line up in the same tick.<br>
+ * Players are visited round robin so each tick covers its share of the list. Work is stopped once the tick's time budget
+ * is spent and the rest carries over to the following ticks. While the server is overloaded every interval is stretched
+ * by the same factor so the total work per tick drops with it. Server thread only.
+ */
+public final class PlayerUpdateScheduler
+{
+    public static final PlayerUpdateScheduler INSTANCE = new PlayerUpdateScheduler();
+
+    private static final int UPDATE_PERIOD = 20; // Ticks between updates of the same player at full speed
+    private static final int MAX_LOAD_FACTOR = 4;
+    private static final long TARGET_TICK_NANOS = 50000000L;
+
+    // Tick at which each player is next due a full poll of their active quests and a full cache rebuild. Keyed by
+    // questing UUID so respawns and dimension changes (which replace the entity) keep their schedule
+    private final HashMap<UUID, long[]> timers = new HashMap<>();
+
+    private int cursor = 0; // Next index into the player list
+    private int accumulated = 0; // Fractional progress towards the next player, in 1/period units
+    private int owed = 0; // Updates due but not yet run, including those deferred by the budget
+    private int loadFactor = 1;
+
+    private PlayerUpdateScheduler()
+    {
+    }
+
+    public void onServerTick(MinecraftServer server, List<EntityPlayerMP> players)
+    {
+        long tick = server.getTickCounter();
+        if(tick % UPDATE_PERIOD == 0) loadFactor = computeLoadFactor(server);
+
+        int count = players.size();
+        if(count <= 0)
+        {
+            owed = 0;
+            accumulated = 0;
+            return;
+        }
+
+        int period = UPDATE_PERIOD * loadFactor;
+        accumulated += count;
+        owed = Math.min(owed + accumulated / period, count); // Never more than one update per player in a tick
+        accumulated %= period;
+
+        long deadline = BQ_Settings.tickBudget > 0 ? System.nanoTime() + BQ_Settings.tickBudget * 1000000L : Long.MAX_VALUE;
+
+        for(boolean first = true; owed > 0; first = false)
+        {
+            if(!first && System.nanoTime() >= deadline) break; // Always make some progress so deferred work can't starve
+
+            if(cursor >= count) cursor = 0;
+            EntityPlayerMP player = players.get(cursor++);
+            owed--;
+
+            UUID uuid = QuestingAPI.getQuestingUUID(player);
+            long[] next = timers.get(uuid);
+            if(next == null) timers.put(uuid, next = new long[]{tick + scaled(BQ_Settings.questCheckInterval), tick + scaled(BQ_Settings.cacheRefreshInterval)});
+
+            boolean pollAll = BQ_Settings.questCheckInterval > 0 && tick >= next[0];
+            boolean fullRefresh = BQ_Settings.cacheRefreshInterval > 0 && tick >= next[1];
+            if(pollAll) next[0] = tick + scaled(BQ_Settings.questCheckInterval);
+            if(fullRefresh) next[1] = tick + scaled(BQ_Settings.cacheRefreshInterval);
+
+            EventHandler.updatePlayer(player, pollAll, fullRefresh);
+        }
+    }
+
+    public void releasePlayer(UUID uuid)
+    {
+        timers.remove(uuid);
+    }
+
+    public void reset()
+    {
+        timers.clear();
+        cursor = 0;
+        accumulated = 0;
+        owed = 0;
+        loadFactor = 1;
+    }
+
+    private long scaled(int interval)
+    {
+        return (long)interval * loadFactor;
+    }
+
+    // Average time the last 100 ticks took against the 50ms a tick has at 20 TPS
+    private static int computeLoadFactor(MinecraftServer server)
+    {
+        long total = 0;
+        for(long time : server.tickTimeArray) total += time;
+        long mean = total / server.tickTimeArray.length;
+        return (int)Math.max(1, Math.min(MAX_LOAD_FACTOR, (mean + TARGET_TICK_NANOS - 1) / TARGET_TICK_NANOS));
+    }
+}
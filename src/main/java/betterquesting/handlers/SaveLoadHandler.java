@@ -1,36 +1,57 @@
 package betterquesting.handlers;
 
+import betterquesting.api.api.QuestingAPI;
 import betterquesting.api.events.DatabaseEvent;
 import betterquesting.api.events.DatabaseEvent.DBType;
 import betterquesting.api.properties.NativeProps;
+import betterquesting.api.questing.IQuest;
+import betterquesting.api.questing.party.IParty;
 import betterquesting.api.storage.BQ_Settings;
 import betterquesting.api.utils.JsonHelper;
 import betterquesting.api.utils.NBTConverter;
+import betterquesting.api2.cache.QuestCache;
+import betterquesting.api2.storage.DBEntry;
+import betterquesting.api2.utils.BQThreadedIO;
 import betterquesting.client.QuestNotification;
 import betterquesting.client.gui2.GuiHome;
 import betterquesting.core.BetterQuesting;
 import betterquesting.legacy.ILegacyLoader;
 import betterquesting.legacy.LegacyLoaderRegistry;
+import betterquesting.questing.CompletionBits;
+import betterquesting.questing.ProgressIndex;
 import betterquesting.questing.QuestDatabase;
 import betterquesting.questing.QuestLineDatabase;
+import betterquesting.questing.QuestStateMemo;
 import betterquesting.questing.party.PartyManager;
 import betterquesting.storage.LifeDatabase;
 import betterquesting.storage.NameCache;
+import betterquesting.storage.PlayerRegistry;
 import betterquesting.storage.QuestSettings;
-import com.google.gson.JsonObject;
 import cpw.mods.fml.common.Loader;
+import gnu.trove.set.hash.TIntHashSet;
 import io.netty.util.internal.ConcurrentSet;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.server.MinecraftServer;
 import net.minecraftforge.common.MinecraftForge;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -51,10 +72,21 @@ public class SaveLoadHandler {
             fileLives = null,
             fileNames = null;
 
+    private static final String PROGRESS_JSON = ".json";
+    private static final String PROGRESS_BINARY = ".dat"; // Gzipped NBT, skipping the conversion to typed JSON
+    private static final int PROGRESS_READ_AHEAD = 64; // Files decoded ahead of the merge, bounding how many are held at once
+    private static final int PROGRESS_MERGE_BATCH = 256;
+
     private ILegacyLoader legacyLoader = null;
 
     private final Set<UUID> dirtyPlayers = new ConcurrentSet<>();
 
+    // Lazy progress loading, fixed when the world loads. Players with progress in memory mapped to when it was last needed
+    private boolean lazyProgress = false;
+    private final Map<UUID, Long> loadedPlayers = new HashMap<>();
+    private final Map<UUID, Future<Void>> unloadWrites = new HashMap<>(); // Saves taken when unloading that may still be writing
+    private final Map<UUID, TIntHashSet> residentProgress = new HashMap<>(); // Quests still holding the progress of players that aren't loaded
+
     public boolean hasUpdate() {
         return this.hasUpdate;
     }
@@ -102,14 +134,14 @@ public class SaveLoadHandler {
 
         checkLegacyFiles(rootDir);
 
+        loadNames(); // Before anything else so progress can be keyed by player index
+
         loadConfig();
 
         loadProgress();
 
         LoadParties();
 
-        loadNames();
-
         loadLives();
 
         legacyLoader = null;
@@ -162,6 +194,16 @@ public class SaveLoadHandler {
         QuestLineDatabase.INSTANCE.reset();
         LifeDatabase.INSTANCE.reset();
         NameCache.INSTANCE.reset();
+        PlayerRegistry.INSTANCE.reset();
+        PlayerUpdateScheduler.INSTANCE.reset();
+        ProgressIndex.INSTANCE.reset();
+
+        synchronized (loadedPlayers) {
+            lazyProgress = false;
+            loadedPlayers.clear();
+            unloadWrites.clear();
+            residentProgress.clear();
+        }
 
         //QuestCache.INSTANCE.reset();
 
@@ -187,16 +229,14 @@ public class SaveLoadHandler {
         {
             isDirty = true;
         } else {
-            JsonObject defTmp = JsonHelper.ReadFromFile(fileDefaultDatabase);
             QuestSettings tmpSettings = new QuestSettings();
-            tmpSettings.readFromNBT(NBTConverter.JSONtoNBT_Object(defTmp, new NBTTagCompound(), true).getCompoundTag("questSettings"));
+            tmpSettings.readFromNBT(JsonHelper.ReadNBTFromFile(fileDefaultDatabase, true).getCompoundTag("questSettings"));
             packVer = tmpSettings.getProperty(NativeProps.PACK_VER);
             packName = tmpSettings.getProperty(NativeProps.PACK_NAME);
         }
 
-        JsonObject json = JsonHelper.ReadFromFile(useDef ? fileDefaultDatabase : fileDatabase);
-
-        NBTTagCompound nbt = NBTConverter.JSONtoNBT_Object(json, new NBTTagCompound(), true);
+        File fileQuests = useDef ? fileDefaultDatabase : fileDatabase;
+        NBTTagCompound nbt = JsonHelper.ReadNBTFromFile(fileQuests, true);
 
         String formatVer = nbt.hasKey("format", 8) ? nbt.getString("format") : "0.0.0";
         String buildVer = nbt.getString("build");
@@ -224,7 +264,7 @@ public class SaveLoadHandler {
             QuestDatabase.INSTANCE.readFromNBT(nbt.getTagList("questDatabase", 10), false);
             QuestLineDatabase.INSTANCE.readFromNBT(nbt.getTagList("questLines", 10), false);
         } else {
-            legacyLoader.readFromJson(json);
+            legacyLoader.readFromJson(JsonHelper.ReadFromFile(fileQuests)); // Legacy formats still need the JSON tree
         }
 
         if (useDef) QuestSettings.INSTANCE.setProperty(NativeProps.EDIT_MODE, false); // Force edit off
@@ -232,44 +272,276 @@ public class SaveLoadHandler {
     }
 
     private void loadProgress() {
-        if (fileProgress.exists()) {
-            JsonObject json = JsonHelper.ReadFromFile(fileProgress);
+        lazyProgress = BQ_Settings.lazyProgress && !fileProgress.exists();
+        if (BQ_Settings.lazyProgress && !lazyProgress) BetterQuesting.logger.warn("Lazy progress loading is unavailable while the shared QuestProgress.json exists. Loading all progress");
 
+        if (fileProgress.exists()) {
+            ProgressIndex.INSTANCE.markIncomplete(); // Shared legacy progress isn't split by player
             if (legacyLoader == null) {
-                NBTTagCompound nbt = NBTConverter.JSONtoNBT_Object(json, new NBTTagCompound(), true);
+                NBTTagCompound nbt = JsonHelper.ReadNBTFromFile(fileProgress, true);
                 QuestDatabase.INSTANCE.readProgressFromNBT(nbt.getTagList("questProgress", 10), false);
             } else {
-                legacyLoader.readProgressFromJson(json);
+                legacyLoader.readProgressFromJson(JsonHelper.ReadFromFile(fileProgress));
+            }
+        }
+
+        loadProgressFiles();
+    }
+
+    // Files are read and decoded on the disk IO pool while this thread merges them in order. Each merge republishes the
+    // quest's completion records to the caches, so the progress a batch of files holds for the same quest is merged at once.
+    // With lazy loading only global quests are kept, as those depend on everyone's progress. The rest loads when needed
+    private void loadProgressFiles() {
+        List<Map.Entry<String, File>> files = new ArrayList<>(getPlayerProgressFiles(true).entrySet());
+        if (files.isEmpty()) return;
+
+        long start = System.nanoTime();
+        ArrayDeque<Future<NBTTagCompound>> reads = new ArrayDeque<>();
+        Map<Integer, NBTTagList[]> batch = new LinkedHashMap<>();
+        int submitted = 0;
+
+        for (int i = 0; i < files.size(); i++) {
+            while (submitted < files.size() && submitted - i < PROGRESS_READ_AHEAD) {
+                reads.add(readProgressFile(files.get(submitted++).getValue()));
+            }
+
+            String name = files.get(i).getKey();
+            File file = files.get(i).getValue();
+            NBTTagList questProgress = awaitProgress(reads.poll(), file).getTagList("questProgress", 10);
+            UUID player = lazyProgress ? toPlayerID(name) : null; // Files not named after a player can't be loaded on demand
+            boolean lazy = player != null;
+            batchProgress(batch, lazy ? globalProgress(player, questProgress) : questProgress);
+            indexProgressFile(name, questProgress, !lazy && file.getName().endsWith(PROGRESS_BINARY) != BQ_Settings.binaryProgress);
+
+            if ((i + 1) % PROGRESS_MERGE_BATCH == 0) mergeProgress(batch);
+        }
+
+        mergeProgress(batch);
+        BetterQuesting.logger.info((lazyProgress ? "Indexed " : "Loaded ") + files.size() + " player progress files in " + (System.nanoTime() - start) / 1000000L + "ms");
+    }
+
+    /**
+     * Loads the progress of any of the players that isn't in memory yet when lazy progress loading is on. Needed before
+     * reading or changing the progress of players that may be offline
+     */
+    public void ensureProgressLoaded(Collection<UUID> players) {
+        if (!lazyProgress) return;
+        long now = System.currentTimeMillis();
+
+        synchronized (loadedPlayers) {
+            for (UUID player : players) {
+                if (player != null && loadedPlayers.put(player, now) == null) loadPlayerFile(player);
+            }
+        }
+    }
+
+    public void ensureProgressLoaded(UUID... players) {
+        ensureProgressLoaded(Arrays.asList(players));
+    }
+
+    /**
+     * Loads the progress of every player that has any saved, for changes made to all players at once
+     */
+    public void ensureAllProgressLoaded() {
+        if (!lazyProgress) return;
+
+        List<UUID> players = new ArrayList<>();
+        for (String name : getPlayerProgressFiles(false).keySet()) {
+            UUID player = toPlayerID(name);
+            if (player != null) players.add(player);
+        }
+        ensureProgressLoaded(players);
+    }
+
+    /**
+     * Saves and unloads the progress of offline players that haven't been needed for the configured delay. Players stay
+     * loaded while anyone in their party is online. Server thread only
+     */
+    public void unloadIdleProgress(List<EntityPlayerMP> online) {
+        if (!lazyProgress) return;
+        long now = System.currentTimeMillis();
+        long cutoff = now - BQ_Settings.progressUnloadDelay * 60000L;
+        List<UUID> idle = new ArrayList<>();
+
+        synchronized (loadedPlayers) {
+            for (EntityPlayerMP player : online) {
+                UUID uuid = QuestingAPI.getQuestingUUID(player);
+                DBEntry<IParty> party = PartyManager.INSTANCE.getParty(uuid);
+                if (party == null) {
+                    loadedPlayers.replace(uuid, now);
+                } else {
+                    for (UUID member : party.getValue().getMembers()) loadedPlayers.replace(member, now);
+                }
+            }
+
+            loadedPlayers.forEach((uuid, lastNeeded) -> {
+                if (lastNeeded < cutoff) idle.add(uuid);
+            });
+            idle.forEach(this::unloadPlayer);
+            unloadWrites.values().removeIf(Future::isDone);
+        }
+
+        if (!idle.isEmpty()) BetterQuesting.logger.info("Unloaded progress of " + idle.size() + " idle players");
+    }
+
+    // Everything that isn't still in memory from startup or the last unload, where it can be newer than on disk.
+    // Decided by what was kept rather than by the global flag, which may have changed since
+    private void loadPlayerFile(UUID player) {
+        Future<Void> write = unloadWrites.remove(player);
+        if (write != null) {
+            try {
+                write.get();
+            } catch (Exception e) {
+                BetterQuesting.logger.warn("Saving progress of " + player + " failed before reloading it", e);
+            }
+        }
+
+        TIntHashSet resident = residentProgress.remove(player);
+        File file = findProgressFile(player);
+        if (file == null) return; // Nothing saved yet
+
+        NBTTagList questProgress = awaitProgress(readProgressFile(file), file).getTagList("questProgress", 10);
+        QuestDatabase.INSTANCE.readProgressFromNBT(missingProgress(questProgress, resident), true);
+        if (file.getName().endsWith(PROGRESS_BINARY) != BQ_Settings.binaryProgress) dirtyPlayers.add(player);
+    }
+
+    // The save is written from a snapshot taken here so memory can be released straight away. Reloading waits for the write.
+    // Global quests keep the player's progress since everyone depends on it
+    private void unloadPlayer(UUID player) {
+        unloadWrites.put(player, savePlayerProgress(player));
+
+        TIntHashSet resident = new TIntHashSet();
+        int[] withProgress = ProgressIndex.INSTANCE.getQuests(player);
+        for (DBEntry<IQuest> entry : withProgress != null ? QuestDatabase.INSTANCE.bulkLookup(withProgress) : QuestDatabase.INSTANCE.getEntries()) {
+            if (entry.getValue().getProperty(NativeProps.GLOBAL)) {
+                resident.add(entry.getID());
+            } else {
+                entry.getValue().resetUser(player, true);
             }
         }
 
-        getPlayerProgressFiles().forEach(file -> {
-            JsonObject json = JsonHelper.ReadFromFile(file);
-            NBTTagCompound nbt = NBTConverter.JSONtoNBT_Object(json, new NBTTagCompound(), true);
-            QuestDatabase.INSTANCE.readProgressFromNBT(nbt.getTagList("questProgress", 10), true);
+        if (!resident.isEmpty()) residentProgress.put(player, resident);
+        dirtyPlayers.remove(player); // Marked by the reset but the saved progress is what gets loaded back
+        loadedPlayers.remove(player);
+
+        // The resets also queued cache updates and memo entries for the player, which nothing reads until they're loaded again
+        QuestCache.releasePlayer(player);
+        QuestStateMemo.INSTANCE.releasePlayer(player);
+        CompletionBits.INSTANCE.releasePlayer(player, resident.toArray());
+    }
+
+    private File findProgressFile(UUID player) {
+        File json = new File(dirProgress, player.toString() + PROGRESS_JSON);
+        File binary = new File(dirProgress, player.toString() + PROGRESS_BINARY);
+        if (!binary.exists()) return json.exists() ? json : null;
+        return json.exists() && json.lastModified() > binary.lastModified() ? json : binary;
+    }
+
+    private static UUID toPlayerID(String name) {
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Entries of global quests, which are loaded for everyone at startup and recorded as resident for the player
+    private NBTTagList globalProgress(UUID player, NBTTagList questProgress) {
+        NBTTagList filtered = new NBTTagList();
+        TIntHashSet resident = new TIntHashSet();
+        for (int i = 0; i < questProgress.tagCount(); i++) {
+            NBTTagCompound qTag = questProgress.getCompoundTagAt(i);
+            IQuest quest = qTag.hasKey("questID", 99) ? QuestDatabase.INSTANCE.getValue(qTag.getInteger("questID")) : null;
+            if (quest == null || !quest.getProperty(NativeProps.GLOBAL)) continue;
+            filtered.appendTag(qTag);
+            resident.add(qTag.getInteger("questID"));
+        }
+        if (!resident.isEmpty()) residentProgress.put(player, resident);
+        return filtered;
+    }
+
+    private static NBTTagList missingProgress(NBTTagList questProgress, TIntHashSet resident) {
+        NBTTagList filtered = new NBTTagList();
+        for (int i = 0; i < questProgress.tagCount(); i++) {
+            NBTTagCompound qTag = questProgress.getCompoundTagAt(i);
+            if (!qTag.hasKey("questID", 99) || QuestDatabase.INSTANCE.getValue(qTag.getInteger("questID")) == null) continue;
+            if (resident == null || !resident.contains(qTag.getInteger("questID"))) filtered.appendTag(qTag);
+        }
+        return filtered;
+    }
+
+    private static Future<NBTTagCompound> readProgressFile(File file) {
+        if (file.getName().endsWith(PROGRESS_BINARY)) return BQThreadedIO.DISK_IO.enqueue(() -> readCompressed(file));
+        return JsonHelper.ReadNBTFromFile2(file, true);
+    }
+
+    private static NBTTagCompound awaitProgress(Future<NBTTagCompound> read, File file) {
+        try {
+            return read.get();
+        } catch (Exception e) {
+            BetterQuesting.logger.error("An error occurred while loading progress from " + file.getName(), e);
+            JsonHelper.backupMalformed(file);
+            return new NBTTagCompound();
+        }
+    }
+
+    // Appends each quest's completion records and task progress to the batch. Reading the combined lists gives the same
+    // result as reading the files one after another since both are merged entry by entry
+    private static void batchProgress(Map<Integer, NBTTagList[]> batch, NBTTagList questProgress) {
+        for (int i = 0; i < questProgress.tagCount(); i++) {
+            NBTTagCompound qTag = questProgress.getCompoundTagAt(i);
+            if (!qTag.hasKey("questID", 99)) continue;
+
+            NBTTagList[] lists = batch.computeIfAbsent(qTag.getInteger("questID"), k -> new NBTTagList[]{new NBTTagList(), new NBTTagList()});
+            NBTTagList completed = qTag.getTagList("completed", 10);
+            for (int j = 0; j < completed.tagCount(); j++) lists[0].appendTag(completed.getCompoundTagAt(j));
+            NBTTagList tasks = qTag.getTagList("tasks", 10);
+            for (int j = 0; j < tasks.tagCount(); j++) lists[1].appendTag(tasks.getCompoundTagAt(j));
+        }
+    }
+
+    private static void mergeProgress(Map<Integer, NBTTagList[]> batch) {
+        if (batch.isEmpty()) return;
+
+        NBTTagList questProgress = new NBTTagList();
+        batch.forEach((questID, lists) -> {
+            NBTTagCompound qTag = new NBTTagCompound();
+            qTag.setInteger("questID", questID);
+            qTag.setTag("completed", lists[0]);
+            qTag.setTag("tasks", lists[1]);
+            questProgress.appendTag(qTag);
         });
+        batch.clear();
+
+        QuestDatabase.INSTANCE.readProgressFromNBT(questProgress, true); // Holds the database lock once for the whole batch
     }
 
-    private void LoadParties() {
-        JsonObject json = JsonHelper.ReadFromFile(fileParties);
+    private void indexProgressFile(String name, NBTTagList questProgress, boolean migrate) {
+        UUID uuid = toPlayerID(name);
+        if (uuid == null) {
+            ProgressIndex.INSTANCE.markIncomplete(); // Not named after a player so whose progress it holds is unknown
+            return;
+        }
+
+        ProgressIndex.INSTANCE.indexSaved(uuid, questProgress);
+        if (migrate) dirtyPlayers.add(uuid); // Rewritten in the configured format on the next save
+    }
 
-        NBTTagCompound nbt = NBTConverter.JSONtoNBT_Object(json, new NBTTagCompound(), true);
+    private void LoadParties() {
+        NBTTagCompound nbt = JsonHelper.ReadNBTFromFile(fileParties, true);
         PartyManager.INSTANCE.readFromNBT(nbt.getTagList("parties", 10), false);
     }
 
     private void loadNames() {
         NameCache.INSTANCE.reset();
-        JsonObject json = JsonHelper.ReadFromFile(fileNames);
-
-        NBTTagCompound nbt = NBTConverter.JSONtoNBT_Object(json, new NBTTagCompound(), true);
+        NBTTagCompound nbt = JsonHelper.ReadNBTFromFile(fileNames, true);
         NameCache.INSTANCE.readFromNBT(nbt.getTagList("nameCache", 10), false);
+        PlayerRegistry.INSTANCE.readFromNBT(nbt.getTagList("playerIndex", 8));
     }
 
     private void loadLives() {
         LifeDatabase.INSTANCE.reset();
-        JsonObject json = JsonHelper.ReadFromFile(fileLives);
-
-        NBTTagCompound nbt = NBTConverter.JSONtoNBT_Object(json, new NBTTagCompound(), true);
+        NBTTagCompound nbt = JsonHelper.ReadNBTFromFile(fileLives, true);
         LifeDatabase.INSTANCE.readFromNBT(nbt.getCompoundTag("lifeDatabase"), false);
     }
 
@@ -310,9 +582,10 @@ public class SaveLoadHandler {
     }
 
     private List<Future<Void>> saveProgress() {
-        final List<Future<Void>> futures = dirtyPlayers.stream().map(this::savePlayerProgress).collect(Collectors.toList());
-        dirtyPlayers.clear();
-        return futures;
+        final List<UUID> players = new ArrayList<>(dirtyPlayers);
+        dirtyPlayers.removeAll(players);
+        ensureProgressLoaded(players); // Changes to global quests can dirty players whose other progress isn't loaded
+        return players.stream().map(this::savePlayerProgress).collect(Collectors.toList());
     }
 
     private Future<Void> saveParties() {
@@ -327,6 +600,7 @@ public class SaveLoadHandler {
         NBTTagCompound json = new NBTTagCompound();
 
         json.setTag("nameCache", NameCache.INSTANCE.writeToNBT(new NBTTagList(), null));
+        json.setTag("playerIndex", PlayerRegistry.INSTANCE.writeToNBT(new NBTTagList()));
 
         return JsonHelper.WriteToFile2(fileNames, out -> NBTConverter.NBTtoJSON_Compound(json, out, true));
     }
@@ -340,19 +614,101 @@ public class SaveLoadHandler {
     }
 
     public Future<Void> savePlayerProgress(UUID player) {
+        NBTTagCompound json = writePlayerProgress(player);
+
+        if (BQ_Settings.binaryProgress) {
+            return writeCompressed(new File(dirProgress, player.toString() + PROGRESS_BINARY), json, new File(dirProgress, player.toString() + PROGRESS_JSON));
+        }
+
+        return JsonHelper.WriteToFile2(new File(dirProgress, player.toString() + PROGRESS_JSON), out -> NBTConverter.NBTtoJSON_Compound(json, out, true));
+    }
+
+    /**
+     * Writes the player's current progress as JSON regardless of the configured format, for debugging
+     */
+    public Future<Void> exportPlayerProgress(UUID player, File dir) {
+        NBTTagCompound json = writePlayerProgress(player);
+        return JsonHelper.WriteToFile2(new File(dir, player.toString() + PROGRESS_JSON), out -> NBTConverter.NBTtoJSON_Compound(json, out, true));
+    }
+
+    private NBTTagCompound writePlayerProgress(UUID player) {
         NBTTagCompound json = new NBTTagCompound();
 
-        json.setTag("questProgress", QuestDatabase.INSTANCE.writeProgressToNBT(new NBTTagList(), Collections.singletonList(player)));
+        int[] withProgress = ProgressIndex.INSTANCE.getQuests(player);
+        List<UUID> users = Collections.singletonList(player);
+        json.setTag("questProgress", withProgress != null ? QuestDatabase.INSTANCE.writeProgressToNBT(new NBTTagList(), users, withProgress) : QuestDatabase.INSTANCE.writeProgressToNBT(new NBTTagList(), users));
 
-        return JsonHelper.WriteToFile2(new File(dirProgress, player.toString() + ".json"), out -> NBTConverter.NBTtoJSON_Compound(json, out, true));
+        return json;
     }
 
-    private List<File> getPlayerProgressFiles() {
+    /**
+     * Progress files by player, in either format. Backups of malformed files and unfinished writes are skipped. Where both
+     * formats exist the most recently written one wins, and when resolving (world load only, as saves may be in flight
+     * later on) the other is deleted
+     */
+    private Map<String, File> getPlayerProgressFiles(boolean resolve) {
         final File[] files = dirProgress.listFiles();
+        final Map<String, File> byName = new HashMap<>();
         if (files == null) {
-            return new ArrayList<>();
+            return byName;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith("malformed_") || name.endsWith(".tmp")) continue;
+            int ext = name.endsWith(PROGRESS_JSON) ? PROGRESS_JSON.length() : name.endsWith(PROGRESS_BINARY) ? PROGRESS_BINARY.length() : -1;
+            if (ext < 0) continue;
+
+            File other = byName.put(name.substring(0, name.length() - ext), file);
+            if (other == null || !resolve) continue;
+
+            File stale = other.lastModified() > file.lastModified() ? file : other;
+            byName.put(name.substring(0, name.length() - ext), stale == file ? other : file);
+            stale.delete();
         }
-        return Arrays.stream(files).filter(f -> f.getName().endsWith(".json")).collect(Collectors.toList());
+
+        return byName;
+    }
+
+    private static NBTTagCompound readCompressed(File file) {
+        try (FileInputStream fis = new FileInputStream(file)) {
+            return CompressedStreamTools.readCompressed(fis);
+        } catch (Exception e) {
+            BetterQuesting.logger.error("An error occurred while loading progress from " + file.getName(), e);
+            JsonHelper.backupMalformed(file);
+            return new NBTTagCompound();
+        }
+    }
+
+    // Same temp file and move as the JSON writer. The other format's file is only deleted once the new one is in place
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private static Future<Void> writeCompressed(File file, NBTTagCompound tag, File replaced) {
+        final File tmp = new File(file.getAbsolutePath() + ".tmp");
+
+        return BQThreadedIO.DISK_IO.enqueue(() -> {
+            try {
+                if (tmp.exists())
+                    tmp.delete();
+                else if (tmp.getParentFile() != null)
+                    tmp.getParentFile().mkdirs();
+
+                try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                    CompressedStreamTools.writeCompressed(tag, fos);
+                }
+
+                try {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ignored) {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (Exception e) {
+                BetterQuesting.logger.error("An error occurred while saving progress to " + file.getName(), e);
+                return null;
+            }
+
+            replaced.delete();
+            return null;
+        });
     }
 
 }
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.TreeMap;
 
 public class NetImport
 {
@@ -67,6 +68,7 @@ public class NetImport
 		BetterQuesting.logger.log(Level.INFO, "Importing " + impQuestDB.size() + " quest(s) and " + impQuestLineDB.size() + " quest line(s) from " + sender.getGameProfile().getName());
 		
 		HashMap<Integer,Integer> remapped = getRemappedIDs(impQuestDB.getEntries());
+		TreeMap<Integer, IQuest> imported = new TreeMap<>();
 		
 		for(DBEntry<IQuest> entry : impQuestDB.getEntries())
 		{
@@ -82,18 +84,16 @@ public class NetImport
             
             entry.getValue().setRequirements(oldIDs);
             
-			QuestDatabase.INSTANCE.add(remapped.get(entry.getID()), entry.getValue());
+			imported.put(remapped.get(entry.getID()), entry.getValue());
 		}
 		
+		QuestDatabase.INSTANCE.addAll(imported);
+		
 		for(DBEntry<IQuestLine> questLine : impQuestLineDB.getEntries())
 		{
-		    List<DBEntry<IQuestLineEntry>> pendingQLE = new ArrayList<>();
-		    
-			for(DBEntry<IQuestLineEntry> qle : questLine.getValue().getEntries())
-			{
-			    pendingQLE.add(qle);
-				questLine.getValue().removeID(qle.getID());
-			}
+		    List<DBEntry<IQuestLineEntry>> pendingQLE = new ArrayList<>(questLine.getValue().getEntries());
+		    TreeMap<Integer, IQuestLineEntry> remappedQLE = new TreeMap<>();
+		    questLine.getValue().reset();
 			
 			for(DBEntry<IQuestLineEntry> qle : pendingQLE)
             {
@@ -103,9 +103,11 @@ public class NetImport
                     continue;
                 }
                 
-                questLine.getValue().add(remapped.get(qle.getID()), qle.getValue());
+                remappedQLE.put(remapped.get(qle.getID()), qle.getValue());
             }
 			
+			questLine.getValue().addAll(remappedQLE);
+			
 			QuestLineDatabase.INSTANCE.add(QuestLineDatabase.INSTANCE.nextID(), questLine.getValue());
 		}
         
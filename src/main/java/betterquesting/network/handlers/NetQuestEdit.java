@@ -28,6 +28,8 @@ import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.common.MinecraftForge;
 import org.apache.logging.log4j.Level;
 
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -74,7 +76,7 @@ public class NetQuestEdit
         {
             case 0:
             {
-                editQuests(tag.getTagList("data", 10));
+                editQuests(tag.getTagList("data", 10), sender);
                 break;
             }
             case 1:
@@ -90,7 +92,7 @@ public class NetQuestEdit
             }
             case 3:
             {
-                createQuests(tag.getTagList("data", 10));
+                createQuests(tag.getTagList("data", 10), sender);
                 break;
             }
             default:
@@ -102,6 +104,12 @@ public class NetQuestEdit
     
     // Serverside only
     public static void editQuests(NBTTagList data)
+    {
+        editQuests(data, null);
+    }
+    
+    // Serverside only
+    public static void editQuests(NBTTagList data, @Nullable EntityPlayerMP sender)
     {
         int[] ids = new int[data.tagCount()];
         for(int i = 0; i < data.tagCount(); i++)
@@ -113,7 +121,8 @@ public class NetQuestEdit
             IQuest quest = QuestDatabase.INSTANCE.getValue(questID);
             if(quest != null) quest.readFromNBT(entry.getCompoundTag("config"));
         }
-    
+        
+        breakCycles(ids, sender);
         SaveLoadHandler.INSTANCE.markDirty();
         NetQuestSync.sendSync(null, ids, true, false);
     }
@@ -139,6 +148,8 @@ public class NetQuestEdit
     public static void setQuestStates(int[] questIDs, boolean state, UUID targetID)
     {
         List<DBEntry<IQuest>> questList = QuestDatabase.INSTANCE.bulkLookup(questIDs);
+        if(targetID != null) SaveLoadHandler.INSTANCE.ensureProgressLoaded(targetID);
+        else if(!state) SaveLoadHandler.INSTANCE.ensureAllProgressLoaded();
 
         MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
 
@@ -195,6 +206,12 @@ public class NetQuestEdit
     
     // Serverside only
     public static void createQuests(NBTTagList data)
+    {
+        createQuests(data, null);
+    }
+    
+    // Serverside only
+    public static void createQuests(NBTTagList data, @Nullable EntityPlayerMP sender)
     {
         int[] ids = new int[data.tagCount()];
         for(int i = 0; i < data.tagCount(); i++)
@@ -209,10 +226,35 @@ public class NetQuestEdit
             if(entry.hasKey("config", 10)) quest.readFromNBT(entry.getCompoundTag("config"));
         }
         
+        breakCycles(ids, sender);
         SaveLoadHandler.INSTANCE.markDirty();
         NetQuestSync.sendSync(null, ids, true, false);
     }
     
+    // Drops any requirement from the edited quests that would make a quest depend on itself
+    private static void breakCycles(int[] questIDs, @Nullable EntityPlayerMP sender)
+    {
+        int dropped = 0;
+        
+        for(int questID : questIDs)
+        {
+            IQuest quest = QuestDatabase.INSTANCE.getValue(questID);
+            if(quest == null) continue;
+            
+            for(int reqID : quest.getRequirements())
+            {
+                if(reqID != questID && !QuestDatabase.INSTANCE.getGraph().requires(reqID, questID)) continue;
+                
+                quest.setRequirements(Arrays.stream(quest.getRequirements()).filter((id) -> id != reqID).toArray()); // Patches the graph before the next check
+                dropped++;
+            }
+        }
+        
+        if(dropped <= 0) return;
+        BetterQuesting.logger.log(Level.WARN, "Dropped " + dropped + " quest requirement(s) that would have created a cycle");
+        if(sender != null) sender.addChatComponentMessage(new ChatComponentText(ChatFormatting.RED + "Removed " + dropped + " requirement(s) that would make a quest depend on itself"));
+    }
+    
     @SideOnly(Side.CLIENT)
     private static void onClient(NBTTagCompound message) // Imparts edit specific changes
     {
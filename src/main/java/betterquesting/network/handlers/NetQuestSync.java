@@ -6,11 +6,13 @@ import betterquesting.api.events.DatabaseEvent.DBType;
 import betterquesting.api.network.QuestingPacket;
 import betterquesting.api.questing.IQuest;
 import betterquesting.api2.storage.DBEntry;
+import betterquesting.api2.storage.DBSnapshot;
 import betterquesting.api2.utils.BQThreadedIO;
 import betterquesting.api2.utils.Tuple2;
 import betterquesting.core.BetterQuesting;
 import betterquesting.network.PacketSender;
 import betterquesting.network.PacketTypeRegistry;
+import betterquesting.questing.ProgressIndex;
 import betterquesting.questing.QuestDatabase;
 import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.relauncher.Side;
@@ -73,8 +75,10 @@ public class NetQuestSync
         // Offload this to another thread as it could take a while to build
         BQThreadedIO.INSTANCE.enqueue(() -> {
             NBTTagList dataList = new NBTTagList();
-            final List<DBEntry<IQuest>> questSubset = questIDs == null ? QuestDatabase.INSTANCE.getEntries() : QuestDatabase.INSTANCE.bulkLookup(questIDs);
+            final DBSnapshot<IQuest> questDB = QuestDatabase.INSTANCE.snapshot(); // Edits made while this runs won't tear the sync
             final List<UUID> pidList = player == null ? null : Collections.singletonList(QuestingAPI.getQuestingUUID(player));
+            final int[] withProgress = questIDs == null && !config && player != null ? ProgressIndex.INSTANCE.getQuests(pidList.get(0)) : null; // Progress only syncs can skip quests the player has nothing in
+            final List<DBEntry<IQuest>> questSubset = questIDs != null ? questDB.bulkLookup(questIDs) : withProgress != null ? questDB.bulkLookup(withProgress) : questDB.getEntries();
             
             for(DBEntry<IQuest> entry : questSubset)
             {
@@ -0,0 +1,204 @@
+package betterquesting.questing;
+
+import betterquesting.storage.PlayerRegistry;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Per-player bitsets of completed and claimed quests, indexed by quest ID and keyed by {@link PlayerRegistry} index.<br>
+ * Mirrors the completion records of the quests in {@link QuestDatabase#INSTANCE} so prerequisite logic can be evaluated
+ * as a handful of popcounts instead of one record lookup per prerequisite. Global quests are tracked separately and
+ * count as complete for everyone once anybody has completed them.<br>
+ * Kept up to date by {@link QuestInstance} and cleared along with the quest database.
+ */
+public final class CompletionBits
+{
+    public static final CompletionBits INSTANCE = new CompletionBits();
+    
+    private static final long[] EMPTY = new long[0];
+    
+    private long[][] completed = new long[0][];
+    private long[][] claimed = new long[0][];
+    private long[] globalDone = EMPTY;
+    
+    private CompletionBits()
+    {
+    }
+    
+    public void setState(@Nonnull UUID uuid, int questID, boolean complete, boolean isClaimed)
+    {
+        if(questID < 0) return;
+        int idx = PlayerRegistry.INSTANCE.getIndex(uuid);
+        
+        synchronized(this)
+        {
+            if(idx >= completed.length)
+            {
+                int size = Math.max(idx + 1, completed.length + (completed.length >> 1));
+                completed = Arrays.copyOf(completed, size);
+                claimed = Arrays.copyOf(claimed, size);
+            }
+            
+            completed[idx] = setBit(completed[idx], questID, complete);
+            claimed[idx] = setBit(claimed[idx], questID, complete && isClaimed);
+        }
+    }
+    
+    /**
+     * Whether the quest counts as complete for everyone. Only set for global quests with at least one completion
+     */
+    public synchronized void setGlobalDone(int questID, boolean done)
+    {
+        if(questID < 0) return;
+        globalDone = setBit(globalDone, questID, done);
+    }
+    
+    /**
+     * Clears the quest's claimed state, and its completion too unless {@code claimOnly} is set, for every player
+     */
+    public synchronized void clearQuest(int questID, boolean claimOnly)
+    {
+        if(questID < 0) return;
+        
+        for(int i = 0; i < completed.length; i++)
+        {
+            if(!claimOnly) setBit(completed[i], questID, false);
+            setBit(claimed[i], questID, false);
+        }
+        
+        if(!claimOnly) setBit(globalDone, questID, false);
+    }
+    
+    public boolean isComplete(@Nonnull UUID uuid, int questID)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        
+        synchronized(this)
+        {
+            return getBit(globalDone, questID) || (idx >= 0 && idx < completed.length && getBit(completed[idx], questID));
+        }
+    }
+    
+    public boolean isClaimed(@Nonnull UUID uuid, int questID)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        
+        synchronized(this)
+        {
+            return idx >= 0 && idx < claimed.length && getBit(claimed[idx], questID);
+        }
+    }
+    
+    /**
+     * Number of quests in the mask the user has completed
+     */
+    public int countComplete(@Nonnull UUID uuid, @Nonnull Mask mask)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        
+        synchronized(this)
+        {
+            long[] bits = idx >= 0 && idx < completed.length ? completed[idx] : null;
+            if(bits == null) bits = EMPTY;
+            
+            int count = 0;
+            for(int i = 0; i < mask.words.length; i++)
+            {
+                int w = mask.words[i];
+                long done = (w < bits.length ? bits[w] : 0L) | (w < globalDone.length ? globalDone[w] : 0L);
+                count += Long.bitCount(done & mask.bits[i]);
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * Frees the rows of a player whose progress was unloaded, keeping only the bits of the given quests since their
+     * records stay in memory
+     */
+    public void releasePlayer(@Nonnull UUID uuid, @Nonnull int[] keep)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        if(idx < 0) return;
+        
+        synchronized(this)
+        {
+            if(idx >= completed.length) return;
+            completed[idx] = retain(completed[idx], keep);
+            claimed[idx] = retain(claimed[idx], keep);
+        }
+    }
+    
+    public synchronized void reset()
+    {
+        completed = new long[0][];
+        claimed = new long[0][];
+        globalDone = EMPTY;
+    }
+    
+    private static long[] retain(long[] bits, int[] keep)
+    {
+        long[] kept = null;
+        for(int id : keep) if(getBit(bits, id)) kept = setBit(kept, id, true);
+        return kept;
+    }
+    
+    private static boolean getBit(long[] bits, int id)
+    {
+        int w = id >>> 6;
+        return id >= 0 && bits != null && w < bits.length && (bits[w] & (1L << id)) != 0;
+    }
+    
+    // Returns the array holding the bit, which is only reallocated when growing to set one
+    private static long[] setBit(long[] bits, int id, boolean value)
+    {
+        int w = id >>> 6;
+        
+        if(bits == null || w >= bits.length)
+        {
+            if(!value) return bits;
+            bits = bits == null ? new long[w + 1] : Arrays.copyOf(bits, Math.max(w + 1, bits.length + (bits.length >> 1)));
+        }
+        
+        if(value)
+        {
+            bits[w] |= 1L << id;
+        } else
+        {
+            bits[w] &= ~(1L << id);
+        }
+        
+        return bits;
+    }
+    
+    /**
+     * Precomputed set of quest IDs, stored as only the bitset words it touches
+     */
+    public static final class Mask
+    {
+        private final int[] words;
+        private final long[] bits;
+        
+        /**
+         * @param ids Quest IDs in ascending order
+         */
+        public Mask(@Nonnull int[] ids)
+        {
+            int[] w = new int[ids.length];
+            long[] b = new long[ids.length];
+            int n = -1;
+            
+            for(int id : ids)
+            {
+                if(id < 0) continue;
+                if(n < 0 || w[n] != id >>> 6) w[++n] = id >>> 6;
+                b[n] |= 1L << id;
+            }
+            
+            this.words = Arrays.copyOf(w, n + 1);
+            this.bits = Arrays.copyOf(b, n + 1);
+        }
+    }
+}
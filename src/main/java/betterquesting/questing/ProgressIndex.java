@@ -0,0 +1,127 @@
+package betterquesting.questing;
+
+import betterquesting.api.questing.party.IParty;
+import betterquesting.api2.storage.DBEntry;
+import betterquesting.questing.party.PartyManager;
+import betterquesting.storage.PlayerRegistry;
+import gnu.trove.set.hash.TIntHashSet;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Quests each player holds progress in, so saving a player only needs to visit those quests.<br>
+ * Built from the per-player progress files on load and kept up to date from completion records, quests being marked
+ * dirty (which is how tasks report progress) and the places that submit progress for offline players.
+ * Quests are never dropped until the index is reset, so it may list quests whose progress has since been cleared.
+ */
+public final class ProgressIndex
+{
+    public static final ProgressIndex INSTANCE = new ProgressIndex();
+
+    private TIntHashSet[] byPlayer = new TIntHashSet[0]; // [player index]
+    private boolean complete = true;
+
+    private ProgressIndex()
+    {
+    }
+
+    public void add(@Nonnull UUID uuid, int questID)
+    {
+        if(questID < 0) return;
+        int idx = PlayerRegistry.INSTANCE.getIndex(uuid);
+
+        synchronized(this)
+        {
+            if(idx >= byPlayer.length) byPlayer = Arrays.copyOf(byPlayer, Math.max(idx + 1, byPlayer.length + (byPlayer.length >> 1)));
+            if(byPlayer[idx] == null) byPlayer[idx] = new TIntHashSet();
+            byPlayer[idx].add(questID);
+        }
+    }
+
+    /**
+     * Indexes the quest for the player and their whole party, as tasks may write progress for offline members too
+     */
+    public void addParty(@Nonnull UUID uuid, int questID)
+    {
+        add(uuid, questID);
+
+        DBEntry<IParty> party = PartyManager.INSTANCE.getParty(uuid);
+        if(party == null) return;
+        for(UUID member : party.getValue().getMembers()) add(member, questID);
+    }
+
+    /**
+     * Quests the player may hold progress in, in ascending order. Null if the index can't be trusted for this world
+     * (progress was loaded from a source it couldn't index) and every quest needs to be checked instead
+     */
+    @Nullable
+    public int[] getQuests(@Nonnull UUID uuid)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+
+        synchronized(this)
+        {
+            if(!complete) return null;
+            if(idx < 0 || idx >= byPlayer.length || byPlayer[idx] == null) return new int[0];
+            int[] ids = byPlayer[idx].toArray();
+            Arrays.sort(ids);
+            return ids;
+        }
+    }
+
+    /**
+     * Indexes the quests holding progress in a player's saved progress list
+     */
+    public void indexSaved(@Nonnull UUID uuid, @Nonnull NBTTagList questProgress)
+    {
+        for(int i = 0; i < questProgress.tagCount(); i++)
+        {
+            NBTTagCompound tag = questProgress.getCompoundTagAt(i);
+            if(tag.hasKey("questID", 99) && hasProgress(tag)) add(uuid, tag.getInteger("questID"));
+        }
+    }
+
+    /**
+     * Stops trusting the index until the next reset
+     */
+    public synchronized void markIncomplete()
+    {
+        complete = false;
+    }
+
+    public synchronized void reset()
+    {
+        byPlayer = new TIntHashSet[0];
+        complete = true;
+    }
+
+    // Task progress is written by each task in its own format. Anything beyond the entry's own keys counts unless empty
+    private static boolean hasProgress(NBTTagCompound quest)
+    {
+        if(quest.getTagList("completed", 10).tagCount() > 0) return true;
+
+        NBTTagList tasks = quest.getTagList("tasks", 10);
+        for(int i = 0; i < tasks.tagCount(); i++)
+        {
+            NBTTagCompound task = tasks.getCompoundTagAt(i);
+            //noinspection unchecked
+            for(String key : (Set<String>)task.func_150296_c())
+            {
+                if("taskID".equals(key) || "index".equals(key)) continue;
+                NBTBase value = task.getTag(key);
+                if(value instanceof NBTTagList && ((NBTTagList)value).tagCount() <= 0) continue;
+                if(value instanceof NBTTagCompound && ((NBTTagCompound)value).hasNoTags()) continue;
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
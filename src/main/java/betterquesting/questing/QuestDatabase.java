@@ -2,19 +2,39 @@ package betterquesting.questing;
 
 import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.IQuestDatabase;
+import betterquesting.api.questing.IQuestGraph;
+import betterquesting.api2.cache.QuestCache;
+import betterquesting.api2.cache.QuestGraph;
+import betterquesting.api2.cache.ResetScheduler;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.storage.SimpleDatabase;
+import betterquesting.core.BetterQuesting;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 public final class QuestDatabase extends SimpleDatabase<IQuest> implements IQuestDatabase
 {
 	public static final QuestDatabase INSTANCE = new QuestDatabase();
 	
+	// Reverse prerequisite index (quest ID -> quests requiring it). Only maintained for INSTANCE, where quests report edits
+	private final TIntObjectHashMap<TIntHashSet> dependents = new TIntObjectHashMap<>();
+	
+	// Last compiled graph and the requirement rows edited since (null for removed quests), which are patched into it on
+	// the next request instead of compiling everything again. All guarded by the dependents lock
+	private QuestGraph graph = null;
+	private final TIntObjectHashMap<int[]> graphPatch = new TIntObjectHashMap<>();
+	private int graphEdits = 0;
+	
 	@Override
 	public synchronized IQuest createNew(int id)
 	{
@@ -23,26 +43,212 @@ public final class QuestDatabase extends SimpleDatabase<IQuest> implements IQues
 		return quest;
 	}
 	
+	@Override
+    public synchronized DBEntry<IQuest> add(int id, IQuest value)
+    {
+        DBEntry<IQuest> result = super.add(id, value);
+        if(this == INSTANCE && value instanceof QuestInstance) ((QuestInstance)value).setQuestID(id);
+        if(this == INSTANCE) updateDependents(id, null, value.getRequirements());
+        return result;
+    }
+	
+	@Override
+    public synchronized void addAll(Map<Integer, IQuest> entries)
+    {
+        super.addAll(entries);
+        if(this != INSTANCE) return;
+        for(Map.Entry<Integer, IQuest> entry : entries.entrySet())
+        {
+            if(entry.getValue() instanceof QuestInstance) ((QuestInstance)entry.getValue()).setQuestID(getID(entry.getValue()));
+            updateDependents(entry.getKey(), null, entry.getValue().getRequirements());
+        }
+    }
+	
 	@Override
     public synchronized boolean removeID(int id)
     {
+        IQuest value = getValue(id);
         boolean success = super.removeID(id);
-        if(success) for(DBEntry<IQuest> entry : getEntries()) removeReq(entry.getValue(), id);
-        return success;
+        if(!success) return false;
+        
+        if(this == INSTANCE)
+        {
+            if(value instanceof QuestInstance) ((QuestInstance)value).setQuestID(getID(value));
+            updateDependents(id, value.getRequirements(), null);
+            for(int depID : getDependents(id)) removeReq(getValue(depID), id);
+            synchronized(dependents)
+            {
+                dependents.remove(id);
+            }
+            
+            QuestCache.notifyChanged(null, id);
+            QuestStateMemo.INSTANCE.invalidateAll();
+        } else
+        {
+            for(DBEntry<IQuest> entry : getEntries()) removeReq(entry.getValue(), id);
+        }
+        
+        return true;
     }
     
     @Override
     public synchronized boolean removeValue(IQuest value)
     {
         int id = this.getID(value);
-        if(id < 0) return false;
-        boolean success = this.removeValue(value);
-        if(success) for(DBEntry<IQuest> entry : getEntries()) removeReq(entry.getValue(), id);
-        return success;
+        return id >= 0 && this.removeID(id);
+    }
+    
+    @Override
+    public synchronized void reset()
+    {
+        if(this == INSTANCE)
+        {
+            CompletionBits.INSTANCE.reset();
+            for(DBEntry<IQuest> entry : getEntries())
+            {
+                if(entry.getValue() instanceof QuestInstance) ((QuestInstance)entry.getValue()).setQuestID(-1);
+            }
+            
+            synchronized(dependents)
+            {
+                dependents.clear();
+                graphReset();
+            }
+            
+            QuestCache.notifyAllChanged();
+            ResetScheduler.INSTANCE.reset();
+            QuestStateMemo.INSTANCE.reset();
+        }
+        
+        super.reset();
+    }
+    
+    @Override
+    public int[] getDependents(int questID)
+    {
+        if(this != INSTANCE) return IQuestDatabase.super.getDependents(questID);
+        
+        synchronized(dependents)
+        {
+            TIntHashSet set = dependents.get(questID);
+            if(set == null) return new int[0];
+            int[] ids = set.toArray();
+            Arrays.sort(ids);
+            return ids;
+        }
+    }
+    
+    /**
+     * Edits since the last request are patched into the previous graph outside the lock, so edits made meanwhile just
+     * discard the result instead of blocking
+     */
+    @Override
+    public IQuestGraph getGraph()
+    {
+        if(this != INSTANCE) return QuestGraph.compile(getEntries());
+        
+        QuestGraph base;
+        TIntObjectHashMap<int[]> rows = null;
+        int edits;
+        synchronized(dependents)
+        {
+            if(graph != null && graphPatch.isEmpty()) return graph;
+            base = graph;
+            if(base != null) rows = new TIntObjectHashMap<>(graphPatch);
+            edits = graphEdits;
+        }
+        
+        QuestGraph compiled = base == null ? QuestGraph.compile(getEntries()) : base.patch(rows);
+        
+        synchronized(dependents)
+        {
+            if(edits == graphEdits)
+            {
+                graph = compiled;
+                graphPatch.clear();
+            }
+        }
+        
+        return compiled;
+    }
+    
+    /**
+     * IDs of every quest that directly or indirectly requires one of the given quests, in ascending order.
+     * The given quests are only included if they depend on each other (or on themselves through a cycle)
+     */
+    public int[] getTransitiveDependents(int... questIDs)
+    {
+        TIntHashSet found = new TIntHashSet();
+        TIntArrayList queue = new TIntArrayList(questIDs);
+        
+        for(int i = 0; i < queue.size(); i++)
+        {
+            for(int depID : getDependents(queue.get(i)))
+            {
+                if(found.add(depID)) queue.add(depID);
+            }
+        }
+        
+        int[] ids = found.toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+    
+    /**
+     * Moves a quest's entries in the reverse prerequisite index from its old requirements to its new ones.
+     * Either array may be null
+     */
+    void updateDependents(int questID, @Nullable int[] oldReqs, @Nullable int[] newReqs)
+    {
+        if(this != INSTANCE || questID < 0) return;
+        
+        synchronized(dependents)
+        {
+            if(oldReqs == null && newReqs != null && dependents.containsKey(questID))
+            {
+                graphReset(); // Quests already requiring the new one have those edges missing from the graph
+            } else
+            {
+                graphEdited(questID, newReqs);
+            }
+            
+            if(oldReqs != null)
+            {
+                for(int req : oldReqs)
+                {
+                    TIntHashSet set = dependents.get(req);
+                    if(set != null && set.remove(questID) && set.isEmpty()) dependents.remove(req);
+                }
+            }
+            
+            if(newReqs != null)
+            {
+                for(int req : newReqs)
+                {
+                    TIntHashSet set = dependents.get(req);
+                    if(set == null) dependents.put(req, set = new TIntHashSet());
+                    set.add(questID);
+                }
+            }
+        }
+    }
+    
+    private void graphEdited(int questID, @Nullable int[] newReqs)
+    {
+        if(graph != null) graphPatch.put(questID, newReqs == null ? null : newReqs.clone());
+        graphEdits++;
+    }
+    
+    private void graphReset()
+    {
+        graph = null;
+        graphPatch.clear();
+        graphEdits++;
     }
     
     private void removeReq(IQuest quest, int id)
     {
+        if(quest == null) return;
         int[] orig = quest.getRequirements();
         if(orig.length <= 0) return;
         boolean hasRemoved = false;
@@ -82,6 +288,9 @@ public final class QuestDatabase extends SimpleDatabase<IQuest> implements IQues
 	{
 		if(!merge) this.reset();
 		
+		TreeMap<Integer, IQuest> added = new TreeMap<>();
+		TIntHashSet read = new TIntHashSet();
+		
 		for(int i = 0; i < nbt.tagCount(); i++)
 		{
 			NBTTagCompound qTag = nbt.getCompoundTagAt(i);
@@ -89,10 +298,22 @@ public final class QuestDatabase extends SimpleDatabase<IQuest> implements IQues
 			int qID = qTag.hasKey("questID", 99) ? qTag.getInteger("questID") : -1;
 			if(qID < 0) continue;
 			
+			if(!read.add(qID)) // Later entries replace earlier ones, as they always have
+			{
+				BetterQuesting.logger.warn("Duplicate quest ID " + qID + " in quest database. Using the last one");
+			}
+			
 			IQuest quest = getValue(qID);
-			quest = quest != null? quest : this.createNew(qID);
+			if(quest == null)
+			{
+				QuestInstance created = new QuestInstance();
+				if(this == INSTANCE) created.setQuestID(qID); // Before reading so ID keyed caches see it
+				added.put(qID, quest = created);
+			}
 			quest.readFromNBT(qTag);
 		}
+		
+		this.addAll(added);
 	}
 	
 	@Override
@@ -108,6 +329,21 @@ public final class QuestDatabase extends SimpleDatabase<IQuest> implements IQues
 		return json;
 	}
 	
+	/**
+	 * Writes progress of only the given quests, such as those a {@link ProgressIndex} lists for a player
+	 */
+	public synchronized NBTTagList writeProgressToNBT(NBTTagList json, List<UUID> users, int[] questIDs)
+	{
+		for(DBEntry<IQuest> entry : this.bulkLookup(questIDs))
+		{
+			NBTTagCompound jq = entry.getValue().writeProgressToNBT(new NBTTagCompound(), users);
+			jq.setInteger("questID", entry.getID());
+			json.appendTag(jq);
+		}
+		
+		return json;
+	}
+	
 	@Override
 	public synchronized void readProgressFromNBT(NBTTagList json, boolean merge)
 	{
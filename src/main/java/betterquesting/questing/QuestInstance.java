@@ -9,6 +9,7 @@ import betterquesting.api.properties.NativeProps;
 import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.rewards.IReward;
 import betterquesting.api.questing.tasks.ITask;
+import betterquesting.api.storage.BQ_Settings;
 import betterquesting.api.utils.BigItemStack;
 import betterquesting.api.utils.NBTConverter;
 import betterquesting.api2.cache.QuestCache;
@@ -23,6 +24,7 @@ import betterquesting.storage.PropertyContainer;
 import betterquesting.storage.QuestSettings;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectLongHashMap;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.init.Items;
 import net.minecraft.nbt.NBTBase;
@@ -40,7 +42,6 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.UUID;
 
 public class QuestInstance implements IQuest
@@ -48,11 +49,18 @@ public class QuestInstance implements IQuest
 	private final TaskStorage tasks = new TaskStorage();
 	private final RewardStorage rewards = new RewardStorage();
 
-	private final HashMap<UUID, NBTTagCompound> completeUsers = new HashMap<>();
+	// Completion records packed as (timestamp << 1 | claimed). NBT is only built when saving or when asked for via getCompletionInfo()
+	private static final long NO_RECORD = Long.MIN_VALUE;
+	private final TObjectLongHashMap<UUID> completeUsers = new TObjectLongHashMap<>(16, 0.5F, NO_RECORD);
+	private final HashMap<UUID, NBTTagCompound> recordExtras = new HashMap<>(); // Any other keys stored in a record, usually none. Guarded by completeUsers
     private int[] preRequisites = new int[0];
+    private CompletionBits.Mask reqMask = new CompletionBits.Mask(preRequisites);
     private TIntObjectMap<RequirementType> prereqTypes = new TIntObjectHashMap<>();
 
 	private final PropertyContainer qInfo = new PropertyContainer();
+	
+	// Assigned by QuestDatabase.INSTANCE while this quest is registered with it so hot paths don't need a reverse lookup
+	private volatile int questID = -1;
 
 	public QuestInstance()
 	{
@@ -94,20 +102,30 @@ public class QuestInstance implements IQuest
 		qInfo.setProperty(prop, qInfo.getProperty(prop, def));
 	}
 
+	void setQuestID(int id)
+	{
+	    synchronized(completeUsers)
+        {
+            int old = questID;
+            if(old == id) return;
+            this.questID = id;
+            if(old >= 0) CompletionBits.INSTANCE.clearQuest(old, false);
+            publishBits();
+        }
+	}
+	
+	private int getQuestID()
+	{
+	    int id = questID;
+	    return id >= 0 ? id : QuestDatabase.INSTANCE.getID(this);
+	}
+
 	@Override
 	public void update(EntityPlayer player)
 	{
 		UUID playerID = QuestingAPI.getQuestingUUID(player);
 
-        int done = 0;
-
-        for(DBEntry<ITask> entry : tasks.getEntries())
-        {
-            if(entry.getValue().isComplete(playerID) || entry.getValue().ignored(playerID))
-            {
-                done++;
-            }
-        }
+        int done = countDoneTasks(playerID);
 
         if(tasks.size() <= 0 || qInfo.getProperty(NativeProps.LOGIC_TASK).getResult(done, tasks.size()))
         {
@@ -127,7 +145,7 @@ public class QuestInstance implements IQuest
 		UUID playerID = QuestingAPI.getQuestingUUID(player);
         QuestCache qc = (QuestCache)player.getExtendedProperties(QuestCache.LOC_QUEST_CACHE.toString());
         if(qc == null) return;
-        int questID = QuestDatabase.INSTANCE.getID(this);
+        int questID = getQuestID();
 
 		if(isComplete(playerID) && (qInfo.getProperty(NativeProps.REPEAT_TIME) < 0 || rewards.size() <= 0))
 		{
@@ -187,34 +205,25 @@ public class QuestInstance implements IQuest
         {
             if(qInfo.getProperty(NativeProps.GLOBAL) && !qInfo.getProperty(NativeProps.GLOBAL_SHARE))
             {
-                for(NBTTagCompound entry : completeUsers.values())
-                {
-                    if(entry.getBoolean("claimed"))
-                    {
-                        return true;
-                    }
-                }
-
-                return false;
+                return !completeUsers.forEachValue((rec) -> !isClaimed(rec)); // Stops early on the first claimed record
             }
 
-            NBTTagCompound entry = getCompletionInfo(uuid);
-            return entry != null && entry.getBoolean("claimed");
+            long rec = completeUsers.get(uuid);
+            return rec != NO_RECORD && isClaimed(rec);
         }
 	}
 
     @Override
     public boolean canClaimBasically(EntityPlayer player) {
         UUID pID = QuestingAPI.getQuestingUUID(player);
-        NBTTagCompound entry = getCompletionInfo(pID);
 
-        return entry != null && !hasClaimed(pID) && !canSubmit(player);
+        return hasRecord(pID) && !hasClaimed(pID) && !canSubmit(player);
     }
 
     @Override
     public boolean canClaim(EntityPlayer player) {
         if (!canClaimBasically(player)) return false;
-        DBEntry<IQuest> dbe = new DBEntry<>(QuestDatabase.INSTANCE.getID(this), this);
+        DBEntry<IQuest> dbe = new DBEntry<>(getQuestID(), this);
         for (DBEntry<IReward> rew : rewards.getEntries()) {
             if (!rew.getValue().canClaim(player, dbe)) {
                 return false;
@@ -227,7 +236,7 @@ public class QuestInstance implements IQuest
 	@Override
 	public void claimReward(EntityPlayer player)
 	{
-        int questID = QuestDatabase.INSTANCE.getID(this);
+        int questID = getQuestID();
         DBEntry<IQuest> dbe = new DBEntry<>(questID, this);
 		for(DBEntry<IReward> rew : rewards.getEntries())
 		{
@@ -239,20 +248,12 @@ public class QuestInstance implements IQuest
 
         synchronized(completeUsers)
         {
-            NBTTagCompound entry = getCompletionInfo(pID);
-
-            if(entry == null)
-            {
-                entry = new NBTTagCompound();
-                this.completeUsers.put(pID, entry);
-            }
-
-            entry.setBoolean("claimed", true);
-            entry.setLong("timestamp", System.currentTimeMillis());
+            completeUsers.put(pID, packRecord(true, System.currentTimeMillis()));
+            updateBits(pID);
 
             DirtyPlayerMarker.markDirty(pID);
         }
-		if(qc != null) qc.markQuestDirty(QuestDatabase.INSTANCE.getID(this));
+		if(qc != null) qc.markQuestDirty(getQuestID());
 	}
 
 	@Override
@@ -264,22 +265,14 @@ public class QuestInstance implements IQuest
 
 		synchronized(completeUsers)
         {
-            NBTTagCompound entry = this.getCompletionInfo(playerID);
-            if(entry == null) return true;
+            long rec = completeUsers.get(playerID);
+            if(rec == NO_RECORD) return true;
 
-            if(!entry.getBoolean("claimed") && getProperty(NativeProps.REPEAT_TIME) >= 0) // Complete but repeatable
+            if(!isClaimed(rec) && getProperty(NativeProps.REPEAT_TIME) >= 0) // Complete but repeatable
             {
                 if(tasks.size() <= 0) return true;
 
-                int done = 0;
-
-                for(DBEntry<ITask> tsk : tasks.getEntries())
-                {
-                    if(tsk.getValue().isComplete(playerID) || tsk.getValue().ignored(playerID))
-                    {
-                        done += 1;
-                    }
-                }
+                int done = countDoneTasks(playerID);
 
                 return !qInfo.getProperty(NativeProps.LOGIC_TASK).getResult(done, tasks.size());
             } else
@@ -297,12 +290,19 @@ public class QuestInstance implements IQuest
 		int A = 0;
 		int B = preRequisites.length;
 
-		for(DBEntry<IQuest> quest : QuestDatabase.INSTANCE.bulkLookup(getRequirements()))
+		if(questID >= 0) // Prerequisites in the main database are mirrored in the completion bitsets
 		{
-			if(quest.getValue().isComplete(uuid))
-			{
-				A++;
-			}
+		    A = CompletionBits.INSTANCE.countComplete(uuid, reqMask);
+		} else
+		{
+            for(int reqID : preRequisites)
+            {
+                IQuest quest = QuestDatabase.INSTANCE.getValue(reqID);
+                if(quest != null && quest.isComplete(uuid))
+                {
+                    A++;
+                }
+            }
 		}
 
 		return qInfo.getProperty(NativeProps.LOGIC_QUEST).getResult(A, B);
@@ -314,16 +314,8 @@ public class QuestInstance implements IQuest
         if(uuid == null) return;
         synchronized(completeUsers)
         {
-            NBTTagCompound entry = this.getCompletionInfo(uuid);
-
-            if(entry == null)
-            {
-                entry = new NBTTagCompound();
-                completeUsers.put(uuid, entry);
-            }
-
-            entry.setBoolean("claimed", false);
-            entry.setLong("timestamp", timestamp);
+            completeUsers.put(uuid, packRecord(false, timestamp));
+            updateBits(uuid);
 
             DirtyPlayerMarker.markDirty(uuid);
         }
@@ -340,13 +332,26 @@ public class QuestInstance implements IQuest
 			return completeUsers.size() > 0;
 		} else
 		{
-			return getCompletionInfo(uuid) != null;
+			return hasRecord(uuid);
 		}
 	}
 
 	@Override
     public EnumQuestState getState(EntityPlayer player) {
         UUID uuid = QuestingAPI.getQuestingUUID(player);
+        int id = questID;
+        if (id < 0 || uuid == null) return computeState(player, uuid);
+
+        EnumQuestState state = QuestStateMemo.INSTANCE.get(uuid, id);
+        if (state != null) return state;
+
+        long stamp = QuestStateMemo.INSTANCE.stamp();
+        state = computeState(player, uuid);
+        QuestStateMemo.INSTANCE.put(uuid, id, stamp, state);
+        return state;
+    }
+
+    private EnumQuestState computeState(EntityPlayer player, UUID uuid) {
         if (this.isComplete(uuid)) {
             if (canClaimBasically(player)) {
                 return EnumQuestState.UNCLAIMED;
@@ -366,7 +371,52 @@ public class QuestInstance implements IQuest
 	{
 	    synchronized(completeUsers)
         {
-            return completeUsers.get(uuid);
+            long rec = completeUsers.get(uuid);
+            return rec == NO_RECORD ? null : writeRecord(extrasOf(uuid), rec);
+        }
+	}
+
+	@Override
+	public long getCompletionTime(UUID uuid)
+	{
+	    synchronized(completeUsers)
+        {
+            long rec = completeUsers.get(uuid);
+            return rec == NO_RECORD ? -1L : getTimestamp(rec);
+        }
+	}
+
+	@Override
+	public boolean hasCompletionRecord(UUID uuid)
+	{
+	    return hasRecord(uuid);
+	}
+
+	/**
+	 * Whether the user's own record is claimed. Unlike {@link #hasClaimed(UUID)} this ignores rewardless and global quests
+	 */
+	public boolean hasClaimedRecord(UUID uuid)
+	{
+	    synchronized(completeUsers)
+        {
+            long rec = completeUsers.get(uuid);
+            return rec != NO_RECORD && isClaimed(rec);
+        }
+	}
+
+	/**
+	 * Tasks done or ignored by the user. Only scans the tasks if the count isn't memoised yet
+	 */
+	public int getDoneTaskCount(UUID uuid)
+	{
+	    return countDoneTasks(uuid);
+	}
+
+	private boolean hasRecord(UUID uuid)
+	{
+	    synchronized(completeUsers)
+        {
+            return completeUsers.containsKey(uuid);
         }
 	}
 
@@ -380,11 +430,15 @@ public class QuestInstance implements IQuest
             if(nbt == null)
             {
                 completeUsers.remove(uuid);
+                recordExtras.remove(uuid);
             } else
             {
-                completeUsers.put(uuid, nbt);
+                completeUsers.put(uuid, packRecord(nbt.getBoolean("claimed"), nbt.getLong("timestamp")));
+                putExtras(uuid, nbt);
             }
 
+            updateBits(uuid);
+
             DirtyPlayerMarker.markDirty(uuid);
         }
     }
@@ -408,31 +462,35 @@ public class QuestInstance implements IQuest
                 if(uuid == null)
                 {
                     completeUsers.clear();
+                    recordExtras.clear();
+                    if(questID >= 0) CompletionBits.INSTANCE.clearQuest(questID, false);
+                    updateGlobalBit();
+                    notifyCaches(null);
+                    invalidateStates(null);
                 } else
                 {
                     completeUsers.remove(uuid);
+                    recordExtras.remove(uuid);
+                    updateBits(uuid);
                 }
             } else
             {
                 if(uuid == null)
                 {
-                    completeUsers.forEach((key, value) -> {
-                        value.setBoolean("claimed", false);
-                        value.setLong("timestamp", 0);
-                    });
-                } else
+                    completeUsers.transformValues((rec) -> packRecord(false, 0));
+                    if(questID >= 0) CompletionBits.INSTANCE.clearQuest(questID, true);
+                    notifyCaches(null);
+                    invalidateStates(null);
+                } else if(completeUsers.containsKey(uuid))
                 {
-                    NBTTagCompound entry = getCompletionInfo(uuid);
-                    if(entry != null)
-                    {
-                        entry.setBoolean("claimed", false);
-                        entry.setLong("timestamp", 0);
-                    }
+                    completeUsers.put(uuid, packRecord(false, 0));
+                    updateBits(uuid);
                 }
             }
 
             DirtyPlayerMarker.markDirty(dirtyPlayers);
             tasks.getEntries().forEach((value) -> value.getValue().resetUser(uuid));
+            if(questID >= 0) QuestStateMemo.INSTANCE.invalidateQuest(questID); // Task progress
         }
 	}
 
@@ -459,7 +517,12 @@ public class QuestInstance implements IQuest
     {
         Arrays.sort(req);
         prereqTypes.retainEntries((a, b) -> Arrays.binarySearch(req, a) >= 0);
+        int[] old = this.preRequisites;
         this.preRequisites = req;
+        this.reqMask = new CompletionBits.Mask(req);
+        if(questID >= 0) QuestDatabase.INSTANCE.updateDependents(questID, old, req);
+        notifyCaches(null);
+        QuestStateMemo.INSTANCE.invalidateEdit(questID);
     }
 
     @Nonnull
@@ -498,6 +561,9 @@ public class QuestInstance implements IQuest
 	public void readFromNBT(NBTTagCompound jObj)
 	{
 		this.qInfo.readFromNBT(jObj.getCompoundTag("properties"));
+		updateGlobalBit();
+		notifyCaches(null);
+		invalidateDefinition(null);
 		this.tasks.readFromNBT(jObj.getTagList("tasks", 10), false);
 		this.rewards.readFromNBT(jObj.getTagList("rewards", 10), false);
 
@@ -534,14 +600,13 @@ public class QuestInstance implements IQuest
 	    synchronized(completeUsers)
         {
             NBTTagList comJson = new NBTTagList();
-            for(Entry<UUID, NBTTagCompound> entry : completeUsers.entrySet())
-            {
-                if(entry.getValue() == null || entry.getKey() == null) continue;
-                if(users != null && !users.contains(entry.getKey())) continue;
-                NBTTagCompound tags = (NBTTagCompound)entry.getValue().copy();
-                tags.setString("uuid", entry.getKey().toString());
+            completeUsers.forEachEntry((uuid, rec) -> {
+                if(uuid == null || (users != null && !users.contains(uuid))) return true;
+                NBTTagCompound tags = writeRecord(extrasOf(uuid), rec);
+                tags.setString("uuid", uuid.toString());
                 comJson.appendTag(tags);
-            }
+                return true;
+            });
             json.setTag("completed", comJson);
 
             NBTTagList tskJson = tasks.writeProgressToNBT(new NBTTagList(), users);
@@ -556,23 +621,30 @@ public class QuestInstance implements IQuest
 	{
 	    synchronized(completeUsers)
         {
-            if(!merge) completeUsers.clear();
+            if(!merge)
+            {
+                completeUsers.clear();
+                recordExtras.clear();
+            }
             NBTTagList comList = json.getTagList("completed", 10);
             for(int i = 0; i < comList.tagCount(); i++)
             {
-                NBTTagCompound entry = (NBTTagCompound)comList.getCompoundTagAt(i).copy();
+                NBTTagCompound entry = comList.getCompoundTagAt(i);
 
                 try
                 {
                     UUID uuid = UUID.fromString(entry.getString("uuid"));
-                    completeUsers.put(uuid, entry);
+                    completeUsers.put(uuid, packRecord(entry.getBoolean("claimed"), entry.getLong("timestamp")));
+                    putExtras(uuid, entry);
                 } catch(Exception e)
                 {
                     BetterQuesting.logger.log(Level.ERROR, "Unable to load UUID for quest", e);
                 }
             }
 
+            publishBits();
             tasks.readProgressFromNBT(json.getTagList("tasks", 10), merge);
+            if(questID >= 0) QuestStateMemo.INSTANCE.invalidateQuest(questID); // Task progress
         }
 	}
 
@@ -581,23 +653,171 @@ public class QuestInstance implements IQuest
 	{
 		synchronized(completeUsers)
         {
-            NBTTagCompound entry = this.getCompletionInfo(uuid);
+            completeUsers.put(uuid, packRecord(true, timestamp));
+            updateBits(uuid);
 
-            if(entry != null)
-            {
-                entry.setBoolean("claimed", true);
-                entry.setLong("timestamp", timestamp);
-            } else
+            DirtyPlayerMarker.markDirty(uuid);
+        }
+	}
+
+    // Tasks done or ignored by the user. Tasks can't report their progress to the quest directly, so the count is memoised
+    // until the quest is marked dirty (which tasks already do to sync progress) or its tasks are reset, edited or reloaded
+    private int countDoneTasks(UUID uuid)
+    {
+        int id = questID;
+        if(id < 0 || uuid == null) return scanDoneTasks(uuid);
+
+        int done = QuestStateMemo.INSTANCE.getTaskCount(uuid, id);
+
+        if(done >= 0 && BQ_Settings.verifyTaskCounts)
+        {
+            int actual = scanDoneTasks(uuid);
+            if(actual == done) return done;
+            BetterQuesting.logger.log(Level.WARN, "Task counter for quest " + id + " was out of date (" + done + " instead of " + actual + "). A task may be changing progress without marking the quest dirty");
+            done = -1;
+        }
+
+        if(done >= 0) return done;
+
+        long stamp = QuestStateMemo.INSTANCE.stamp();
+        done = scanDoneTasks(uuid);
+        QuestStateMemo.INSTANCE.putTaskCount(uuid, id, stamp, done);
+        return done;
+    }
+
+    private int scanDoneTasks(UUID uuid)
+    {
+        int done = 0;
+
+        for(DBEntry<ITask> entry : tasks.getEntries())
+        {
+            if(entry.getValue().isComplete(uuid) || entry.getValue().ignored(uuid))
             {
-                entry = new NBTTagCompound();
-                entry.setBoolean("claimed", true);
-                entry.setLong("timestamp", timestamp);
-                completeUsers.put(uuid, entry);
+                done++;
             }
+        }
 
-            DirtyPlayerMarker.markDirty(uuid);
+        return done;
+    }
+
+    // Mirrors the user's record into the completion bitsets. Callers hold the completeUsers lock
+    private void updateBits(UUID uuid)
+    {
+        int id = questID;
+        if(id < 0 || uuid == null) return;
+        long rec = completeUsers.get(uuid);
+        CompletionBits.INSTANCE.setState(uuid, id, rec != NO_RECORD, rec != NO_RECORD && isClaimed(rec));
+        if(rec != NO_RECORD) ProgressIndex.INSTANCE.add(uuid, id);
+        updateGlobalBit();
+        notifyCaches(uuid);
+        invalidateStates(uuid);
+    }
+
+    private void updateGlobalBit()
+    {
+        synchronized(completeUsers)
+        {
+            if(questID >= 0) CompletionBits.INSTANCE.setGlobalDone(questID, completeUsers.size() > 0 && qInfo.getProperty(NativeProps.GLOBAL));
         }
-	}
+    }
+
+    // Rewrites every record of this quest into the completion bitsets. Callers hold the completeUsers lock
+    private void publishBits()
+    {
+        int id = questID;
+        if(id < 0) return;
+        CompletionBits.INSTANCE.clearQuest(id, false);
+        completeUsers.forEachEntry((uuid, rec) -> {
+            if(uuid == null) return true;
+            CompletionBits.INSTANCE.setState(uuid, id, true, isClaimed(rec));
+            ProgressIndex.INSTANCE.add(uuid, id);
+            return true;
+        });
+        updateGlobalBit();
+        notifyCaches(null);
+        invalidateStates(null);
+    }
+
+    // Queues this quest for re-evaluation in the affected player caches. Changes to global quests affect everyone
+    private void notifyCaches(@Nullable UUID uuid)
+    {
+        int id = questID;
+        if(id >= 0) QuestCache.notifyChanged(uuid == null || qInfo.getProperty(NativeProps.GLOBAL) ? null : uuid, id);
+    }
+
+    // Drops memoised states that can depend on this quest's completion records
+    private void invalidateStates(@Nullable UUID uuid)
+    {
+        if(questID < 0) return;
+
+        if(uuid == null || qInfo.getProperty(NativeProps.GLOBAL))
+        {
+            QuestStateMemo.INSTANCE.invalidateAll();
+        } else
+        {
+            QuestStateMemo.INSTANCE.invalidatePlayer(uuid);
+        }
+    }
+
+    // Drops memoised states after an edit. Only the global flag affects other quests (through their prerequisites)
+    private void invalidateDefinition(@Nullable IPropertyType<?> prop)
+    {
+        if(questID < 0) return;
+
+        if(prop == null || prop == NativeProps.GLOBAL)
+        {
+            QuestStateMemo.INSTANCE.invalidateAll();
+        } else
+        {
+            QuestStateMemo.INSTANCE.invalidateEdit(questID);
+        }
+    }
+
+    private static long packRecord(boolean claimed, long timestamp)
+    {
+        return (timestamp << 1) | (claimed ? 1L : 0L);
+    }
+
+    private static boolean isClaimed(long rec)
+    {
+        return (rec & 1L) != 0;
+    }
+
+    private static long getTimestamp(long rec)
+    {
+        return rec >> 1;
+    }
+
+    // Copy of the record's other keys to write the packed values over. Callers hold the completeUsers lock
+    private NBTTagCompound extrasOf(UUID uuid)
+    {
+        NBTTagCompound extras = recordExtras.isEmpty() ? null : recordExtras.get(uuid);
+        return extras == null ? new NBTTagCompound() : (NBTTagCompound)extras.copy();
+    }
+
+    // Keeps whatever else an add-on stored in the record so it survives being saved again
+    private void putExtras(UUID uuid, NBTTagCompound record)
+    {
+        NBTTagCompound extras = (NBTTagCompound)record.copy();
+        extras.removeTag("claimed");
+        extras.removeTag("timestamp");
+        extras.removeTag("uuid");
+
+        if(extras.hasNoTags())
+        {
+            recordExtras.remove(uuid);
+        } else
+        {
+            recordExtras.put(uuid, extras);
+        }
+    }
+
+    private static NBTTagCompound writeRecord(NBTTagCompound tag, long rec)
+    {
+        tag.setBoolean("claimed", isClaimed(rec));
+        tag.setLong("timestamp", getTimestamp(rec));
+        return tag;
+    }
 
     @Override
     public <T> T getProperty(IPropertyType<T> prop)
@@ -621,17 +841,26 @@ public class QuestInstance implements IQuest
     public <T> void setProperty(IPropertyType<T> prop, T value)
     {
         qInfo.setProperty(prop, value);
+        if(prop == NativeProps.GLOBAL) updateGlobalBit();
+        notifyCaches(null);
+        invalidateDefinition(prop);
     }
 
     @Override
     public void removeProperty(IPropertyType<?> prop)
     {
         qInfo.removeProperty(prop);
+        if(prop == NativeProps.GLOBAL) updateGlobalBit();
+        notifyCaches(null);
+        invalidateDefinition(prop);
     }
 
     @Override
     public void removeAllProps()
     {
         qInfo.removeAllProps();
+        updateGlobalBit();
+        notifyCaches(null);
+        invalidateDefinition(null);
     }
 }
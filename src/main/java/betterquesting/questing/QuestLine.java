@@ -19,6 +19,7 @@ import net.minecraft.nbt.NBTTagList;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.TreeMap;
 
 public class QuestLine extends SimpleDatabase<IQuestLineEntry> implements IQuestLine
 {
@@ -146,6 +147,7 @@ public class QuestLine extends SimpleDatabase<IQuestLineEntry> implements IQuest
 		
 		if(!merge) reset();
 		
+		TreeMap<Integer, IQuestLineEntry> loaded = new TreeMap<>();
 		NBTTagList qList = json.getTagList("quests", 10);
 		for(int i = 0; i < qList.tagCount(); i++)
 		{
@@ -154,9 +156,11 @@ public class QuestLine extends SimpleDatabase<IQuestLineEntry> implements IQuest
 			int id = qTag.hasKey("id", 99) ? qTag.getInteger("id") : -1;
 			if(id< 0) continue;
 			
-			add(id, new QuestLineEntry(qTag));
+			loaded.put(id, new QuestLineEntry(qTag));
 		}
 		
+		addAll(loaded);
+		
 		this.setupProps();
 	}
     
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.TreeMap;
 
 public final class QuestLineDatabase extends SimpleDatabase<IQuestLine> implements IQuestLineDatabase
 {
@@ -86,6 +87,7 @@ public final class QuestLineDatabase extends SimpleDatabase<IQuestLine> implemen
 		if(!merge) reset();
         
         List<IQuestLine> unassigned = new ArrayList<>();
+        TreeMap<Integer, IQuestLine> added = new TreeMap<>();
 		HashMap<Integer,Integer> orderMap = new HashMap<>();
 		
 		for(int i = 0; i < json.tagCount(); i++)
@@ -96,12 +98,13 @@ public final class QuestLineDatabase extends SimpleDatabase<IQuestLine> implemen
 			int order = jql.hasKey("order", 99) ? jql.getInteger("order") : -1;
 			
 			IQuestLine line = getValue(id);
-			if(line == null) line = new QuestLine();
+			boolean exists = line != null;
+			if(!exists) line = new QuestLine();
 			line.readFromNBT(jql, merge);
 			
 			if(id >= 0)
 			{
-				add(id, line);
+				if(!exists) added.put(id, line);
 			} else
 			{
 				unassigned.add(line);
@@ -110,6 +113,8 @@ public final class QuestLineDatabase extends SimpleDatabase<IQuestLine> implemen
 			if(order >= 0) orderMap.put(order, id);
 		}
 		
+		addAll(added);
+		
 		// Legacy support ONLY
 		for(IQuestLine q : unassigned) add(nextID(), q);
 		
@@ -0,0 +1,223 @@
+package betterquesting.questing;
+
+import betterquesting.api.enums.EnumQuestState;
+import betterquesting.storage.PlayerRegistry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Memoised {@link EnumQuestState}, visibility and task counts per player and quest, so repeated queries from the UI,
+ * commands and cache refreshes are O(1).<br>
+ * Every change that can affect a state stamps a version on the quest, the player or everything from one shared clock.
+ * A memo entry records the clock value read before its state was computed and is only valid while no version that
+ * applies to it is newer. Changes made while a state is being computed therefore always invalidate it.
+ */
+public final class QuestStateMemo
+{
+    public static final QuestStateMemo INSTANCE = new QuestStateMemo();
+    
+    private static final EnumQuestState[] STATES = EnumQuestState.values();
+    private static final long[] EMPTY = new long[0];
+    
+    private long clock = 0;
+    private long globalVersion = 0;
+    private long editVersion = 0; // Last edit to any quest. Visibility can depend on any other quest's definition
+    private long[] questVersions = EMPTY;
+    private long[] playerVersions = EMPTY;
+    private long[][] memo = new long[0][]; // [player index][quest ID] = (stamp << 3 | state ordinal + 1), 0 when empty
+    private long[][] shown = new long[0][]; // [player index][quest ID] = (stamp << 4 | context << 2 | shown << 1 | 1), 0 when empty
+    private long[][] taskCounts = new long[0][]; // [player index][quest ID] = (stamp << 20 | done + 1), 0 when empty
+    
+    private QuestStateMemo()
+    {
+    }
+    
+    /**
+     * Clock value to pass to {@link #put(UUID, int, long, EnumQuestState)}. Must be read before computing the state
+     */
+    public synchronized long stamp()
+    {
+        return clock;
+    }
+    
+    @Nullable
+    public EnumQuestState get(@Nonnull UUID uuid, int questID)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        if(idx < 0 || questID < 0) return null;
+        
+        synchronized(this)
+        {
+            if(idx >= memo.length || memo[idx] == null || questID >= memo[idx].length) return null;
+            long entry = memo[idx][questID];
+            if(entry == 0) return null;
+            
+            long stamp = entry >>> 3;
+            if(stamp < globalVersion || stamp < versionOf(playerVersions, idx) || stamp < versionOf(questVersions, questID)) return null;
+            return STATES[(int)(entry & 7L) - 1];
+        }
+    }
+    
+    public void put(@Nonnull UUID uuid, int questID, long stamp, @Nonnull EnumQuestState state)
+    {
+        if(questID < 0) return;
+        int idx = PlayerRegistry.INSTANCE.getIndex(uuid);
+        
+        synchronized(this)
+        {
+            if(idx >= memo.length) memo = Arrays.copyOf(memo, Math.max(idx + 1, memo.length + (memo.length >> 1)));
+            memo[idx] = setSlot(memo[idx], questID, (stamp << 3) | (state.ordinal() + 1));
+        }
+    }
+    
+    /**
+     * Memoised visibility: 1 if shown, 0 if hidden or -1 if unknown. The context packs the viewer settings the result
+     * was computed under (edit permission, view mode) and entries from any other context are ignored
+     */
+    public int getShown(@Nonnull UUID uuid, int questID, int context)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        if(idx < 0 || questID < 0) return -1;
+        
+        synchronized(this)
+        {
+            if(idx >= shown.length || shown[idx] == null || questID >= shown[idx].length) return -1;
+            long entry = shown[idx][questID];
+            if(entry == 0 || ((entry >>> 2) & 3L) != context) return -1;
+            
+            long stamp = entry >>> 4;
+            if(stamp < globalVersion || stamp < editVersion || stamp < versionOf(playerVersions, idx)) return -1;
+            return (int)((entry >>> 1) & 1L);
+        }
+    }
+    
+    public void putShown(@Nonnull UUID uuid, int questID, int context, long stamp, boolean isShown)
+    {
+        if(questID < 0) return;
+        int idx = PlayerRegistry.INSTANCE.getIndex(uuid);
+        
+        synchronized(this)
+        {
+            if(idx >= shown.length) shown = Arrays.copyOf(shown, Math.max(idx + 1, shown.length + (shown.length >> 1)));
+            shown[idx] = setSlot(shown[idx], questID, (stamp << 4) | ((long)(context & 3) << 2) | (isShown ? 2L : 0L) | 1L);
+        }
+    }
+    
+    /**
+     * Memoised number of tasks the player has done (or that are ignored) in the quest, or -1 if unknown.
+     * Shares its invalidation with the quest states, task progress changes are reported through {@link #invalidateQuest(int)}
+     */
+    public int getTaskCount(@Nonnull UUID uuid, int questID)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        if(idx < 0 || questID < 0) return -1;
+        
+        synchronized(this)
+        {
+            if(idx >= taskCounts.length || taskCounts[idx] == null || questID >= taskCounts[idx].length) return -1;
+            long entry = taskCounts[idx][questID];
+            if(entry == 0) return -1;
+            
+            long stamp = entry >>> 20;
+            if(stamp < globalVersion || stamp < versionOf(playerVersions, idx) || stamp < versionOf(questVersions, questID)) return -1;
+            return (int)(entry & 0xFFFFFL) - 1;
+        }
+    }
+    
+    public void putTaskCount(@Nonnull UUID uuid, int questID, long stamp, int done)
+    {
+        if(questID < 0 || done < 0 || done >= 0xFFFFF) return;
+        int idx = PlayerRegistry.INSTANCE.getIndex(uuid);
+        
+        synchronized(this)
+        {
+            if(idx >= taskCounts.length) taskCounts = Arrays.copyOf(taskCounts, Math.max(idx + 1, taskCounts.length + (taskCounts.length >> 1)));
+            taskCounts[idx] = setSlot(taskCounts[idx], questID, (stamp << 20) | (done + 1));
+        }
+    }
+    
+    /**
+     * Something only affecting this quest's own state changed, such as its task progress
+     */
+    public synchronized void invalidateQuest(int questID)
+    {
+        if(questID < 0) return;
+        if(questID >= questVersions.length) questVersions = Arrays.copyOf(questVersions, Math.max(questID + 1, questVersions.length + (questVersions.length >> 1)));
+        questVersions[questID] = ++clock;
+    }
+    
+    /**
+     * The quest's properties or requirements were edited. Also drops every visibility result since those can depend on
+     * other quests through their requirements
+     */
+    public synchronized void invalidateEdit(int questID)
+    {
+        invalidateQuest(questID);
+        editVersion = clock;
+    }
+    
+    /**
+     * The player's progress changed, which can affect any quest that depends on it
+     */
+    public void invalidatePlayer(@Nonnull UUID uuid)
+    {
+        int idx = PlayerRegistry.INSTANCE.getIndex(uuid);
+        
+        synchronized(this)
+        {
+            if(idx >= playerVersions.length) playerVersions = Arrays.copyOf(playerVersions, Math.max(idx + 1, playerVersions.length + (playerVersions.length >> 1)));
+            playerVersions[idx] = ++clock;
+        }
+    }
+    
+    /**
+     * Frees the memo rows of a player who logged out or was unloaded. They are filled again on demand
+     */
+    public void releasePlayer(@Nonnull UUID uuid)
+    {
+        int idx = PlayerRegistry.INSTANCE.findIndex(uuid);
+        if(idx < 0) return;
+        
+        synchronized(this)
+        {
+            if(idx < memo.length) memo[idx] = null;
+            if(idx < shown.length) shown[idx] = null;
+            if(idx < taskCounts.length) taskCounts[idx] = null;
+            
+            // States still being computed from before the release mustn't be trusted if they're put back
+            if(idx >= playerVersions.length) playerVersions = Arrays.copyOf(playerVersions, Math.max(idx + 1, playerVersions.length + (playerVersions.length >> 1)));
+            playerVersions[idx] = ++clock;
+        }
+    }
+    
+    public synchronized void invalidateAll()
+    {
+        globalVersion = ++clock;
+    }
+    
+    public synchronized void reset()
+    {
+        memo = new long[0][];
+        shown = new long[0][];
+        taskCounts = new long[0][];
+        questVersions = EMPTY;
+        playerVersions = EMPTY;
+        globalVersion = ++clock;
+    }
+    
+    private static long[] setSlot(long[] row, int index, long value)
+    {
+        if(row == null) row = new long[index + 1];
+        if(index >= row.length) row = Arrays.copyOf(row, Math.max(index + 1, row.length + (row.length >> 1)));
+        row[index] = value;
+        return row;
+    }
+    
+    private static long versionOf(long[] versions, int index)
+    {
+        return index < versions.length ? versions[index] : 0L;
+    }
+}
@@ -10,6 +10,7 @@ import betterquesting.api2.cache.QuestCache;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.storage.SimpleDatabase;
 import betterquesting.core.BetterQuesting;
+import betterquesting.handlers.SaveLoadHandler;
 import betterquesting.questing.QuestDatabase;
 import betterquesting.storage.NameCache;
 import betterquesting.storage.QuestSettings;
@@ -37,6 +38,8 @@ public class PartyManager extends SimpleDatabase<IParty> implements IPartyDataba
 	}
 
 	private static void SyncPartyQuests(IParty party, List<UUID> targetUUIDs, boolean prohibitClaim) {
+		SaveLoadHandler.INSTANCE.ensureProgressLoaded(party.getMembers());
+		SaveLoadHandler.INSTANCE.ensureProgressLoaded(targetUUIDs);
 		new Thread(() -> {
 			BetterQuesting.logger.info("Start force party quest sync");
 			List<UUID> partyMembers = party.getMembers();
@@ -46,15 +49,15 @@ public class PartyManager extends SimpleDatabase<IParty> implements IPartyDataba
 			for (DBEntry<IQuest> questEntry : QuestDatabase.INSTANCE.getEntries()) {
 				IQuest quest = questEntry.getValue();
 				long completionTime = -1;
+				boolean completed = false;
 				for (UUID member : partyMembers) {
-					NBTTagCompound completionInfo = quest.getCompletionInfo(member);
-					if (completionInfo != null){
-						completionTime = completionInfo.getLong("timestamp");
-						break;
-					}
+					if (!quest.hasCompletionRecord(member)) continue;
+					completionTime = quest.getCompletionTime(member);
+					completed = true;
+					break;
 				}
 
-                if (completionTime != -1) {
+                if (completed) {
                     for (SyncPlayerContainer target : t) {
                         if (quest.isComplete(target.uuid)) continue;
                         quest.setComplete(target.uuid, completionTime);
@@ -139,6 +142,8 @@ public class PartyManager extends SimpleDatabase<IParty> implements IPartyDataba
 	public void readFromNBT(NBTTagList json, boolean merge)
 	{
 		if(!merge) reset();
+		
+		TreeMap<Integer, IParty> loaded = new TreeMap<>();
 
 		for(int i = 0; i < json.tagCount(); i++)
 		{
@@ -152,9 +157,11 @@ public class PartyManager extends SimpleDatabase<IParty> implements IPartyDataba
 
 			if(party.getMembers().size() > 0)
 			{
-				add(partyID, party);
+				loaded.put(partyID, party);
 			}
 		}
+		
+		addAll(loaded);
 	}
 
 	@Override
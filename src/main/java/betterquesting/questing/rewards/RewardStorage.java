@@ -12,6 +12,7 @@ import net.minecraft.util.ResourceLocation;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.UUID;
 
 public class RewardStorage extends SimpleDatabase<IReward> implements IDatabaseNBT<IReward, NBTTagList, NBTTagList>
@@ -37,6 +38,7 @@ public class RewardStorage extends SimpleDatabase<IReward> implements IDatabaseN
 	{
 		if(!merge) reset();
 		List<IReward> unassigned = new ArrayList<>();
+		TreeMap<Integer, IReward> assigned = new TreeMap<>();
 		
 		for(int i = 0; i < json.tagCount(); i++)
 		{
@@ -64,7 +66,7 @@ public class RewardStorage extends SimpleDatabase<IReward> implements IDatabaseN
 				
 				if(index >= 0)
 				{
-					add(index, reward);
+					assigned.put(index, reward);
 				} else
 				{
 					unassigned.add(reward);
@@ -76,7 +78,7 @@ public class RewardStorage extends SimpleDatabase<IReward> implements IDatabaseN
 				
 				if(index >= 0)
 				{
-					add(index, rph);
+					assigned.put(index, rph);
 				} else
 				{
 					unassigned.add(rph);
@@ -84,6 +86,8 @@ public class RewardStorage extends SimpleDatabase<IReward> implements IDatabaseN
 			}
 		}
 		
+		addAll(assigned);
+		
 		for(IReward r : unassigned)
 		{
 			add(nextID(), r);
@@ -13,6 +13,7 @@ import net.minecraft.util.ResourceLocation;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.UUID;
 
 public class TaskStorage extends SimpleDatabase<ITask> implements IDatabaseNBT<ITask, NBTTagList, NBTTagList>
@@ -37,6 +38,7 @@ public class TaskStorage extends SimpleDatabase<ITask> implements IDatabaseNBT<I
 	{
 		if(!merge) reset();
 		List<ITask> unassigned = new ArrayList<>();
+		TreeMap<Integer, ITask> assigned = new TreeMap<>();
 
 		for(int i = 0; i < json.tagCount(); i++)
 		{
@@ -69,13 +71,14 @@ public class TaskStorage extends SimpleDatabase<ITask> implements IDatabaseNBT<I
 
             if(index >= 0)
             {
-                add(index, task);
+                assigned.put(index, task);
             } else
             {
                 unassigned.add(task);
             }
 		}
 
+		addAll(assigned);
 		for(ITask t : unassigned) add(nextID(), t);
 	}
 
@@ -0,0 +1,97 @@
+package betterquesting.storage;
+
+import betterquesting.api.storage.IPlayerRegistry;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagString;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.UUID;
+
+public final class PlayerRegistry implements IPlayerRegistry
+{
+	public static final PlayerRegistry INSTANCE = new PlayerRegistry();
+	
+	private final TObjectIntHashMap<UUID> indices = new TObjectIntHashMap<>(16, 0.5F, -1);
+	private final ArrayList<UUID> players = new ArrayList<>();
+	
+	@Override
+	public synchronized int getIndex(@Nonnull UUID uuid)
+	{
+		int idx = indices.get(uuid);
+		if(idx >= 0) return idx;
+		
+		idx = players.size();
+		players.add(uuid);
+		indices.put(uuid, idx);
+		return idx;
+	}
+	
+	@Override
+	public synchronized int findIndex(@Nonnull UUID uuid)
+	{
+		return indices.get(uuid);
+	}
+	
+	@Override
+	public synchronized UUID getUUID(int index)
+	{
+		return index < 0 || index >= players.size() ? null : players.get(index);
+	}
+	
+	@Nonnull
+	@Override
+	public synchronized UUID intern(@Nonnull UUID uuid)
+	{
+		return players.get(getIndex(uuid));
+	}
+	
+	@Override
+	public synchronized int size()
+	{
+		return players.size();
+	}
+	
+	/**
+	 * Writes every UUID in index order. A list position is the index, so entries are never skipped and holes are written
+	 * as empty strings
+	 */
+	@Override
+	public synchronized NBTTagList writeToNBT(NBTTagList nbt)
+	{
+		for(UUID uuid : players) nbt.appendTag(new NBTTagString(uuid == null ? "" : uuid.toString()));
+		return nbt;
+	}
+	
+	@Override
+	public synchronized void readFromNBT(NBTTagList nbt)
+	{
+		reset();
+		
+		for(int i = 0; i < nbt.tagCount(); i++)
+		{
+			UUID uuid;
+			
+			try
+			{
+				uuid = UUID.fromString(nbt.getStringTagAt(i));
+			} catch(Exception e)
+			{
+				uuid = null;
+			}
+			
+			// Broken or duplicate entries are left as holes so every later index stays where it was
+			if(uuid != null && indices.containsKey(uuid)) uuid = null;
+			if(uuid != null) indices.put(uuid, i);
+			players.add(uuid);
+		}
+	}
+	
+	@Override
+	public synchronized void reset()
+	{
+		indices.clear();
+		players.clear();
+	}
+}
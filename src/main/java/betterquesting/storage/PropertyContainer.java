@@ -8,13 +8,24 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.ResourceLocation;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class PropertyContainer implements IPropertyContainer, INBTSaveLoad<NBTTagCompound>
 {
+    private static final Object ABSENT = new Object();
+    
 	private final NBTTagCompound nbtInfo = new NBTTagCompound();
 	
+	/**
+	 * Decoded values keyed by property type. NBT remains the source of truth and only immutable values are kept here.
+	 * Guarded by the nbtInfo monitor.
+	 */
+	private final Map<IPropertyType<?>, Object> valueCache = new IdentityHashMap<>();
+	
 	@Override
 	public <T> T getProperty(IPropertyType<T> prop)
 	{
@@ -24,17 +35,28 @@ public class PropertyContainer implements IPropertyContainer, INBTSaveLoad<NBTTa
 	}
 	
 	@Override
+    @SuppressWarnings("unchecked")
 	public <T> T getProperty(IPropertyType<T> prop, T def)
 	{
 		if(prop == null) return def;
 		
 		synchronized(nbtInfo)
         {
+            Object cached = valueCache.get(prop);
+            if(cached == ABSENT) return def;
+            if(cached != null) return (T)cached;
+            
             NBTTagCompound jProp = getDomain(prop.getKey());
     
-            if(!jProp.hasKey(prop.getKey().getResourcePath())) return def;
+            if(!jProp.hasKey(prop.getKey().getResourcePath()))
+            {
+                valueCache.put(prop, ABSENT);
+                return def;
+            }
     
-            return prop.readValue(jProp.getTag(prop.getKey().getResourcePath()));
+            T value = prop.readValue(jProp.getTag(prop.getKey().getResourcePath()));
+            if(isImmutable(value)) valueCache.put(prop, value);
+            return value;
         }
 	}
 	
@@ -60,6 +82,7 @@ public class PropertyContainer implements IPropertyContainer, INBTSaveLoad<NBTTa
             
             if(!jProp.hasKey(prop.getKey().getResourcePath())) return;
             
+            invalidate(prop.getKey());
             jProp.removeTag(prop.getKey().getResourcePath());
             
             if(jProp.hasNoTags()) nbtInfo.removeTag(prop.getKey().getResourceDomain());
@@ -73,6 +96,7 @@ public class PropertyContainer implements IPropertyContainer, INBTSaveLoad<NBTTa
 		
 		synchronized(nbtInfo)
         {
+            invalidate(prop.getKey());
             NBTTagCompound dom = getDomain(prop.getKey());
             dom.setTag(prop.getKey().getResourcePath(), prop.writeValue(value));
             nbtInfo.setTag(prop.getKey().getResourceDomain(), dom);
@@ -85,6 +109,7 @@ public class PropertyContainer implements IPropertyContainer, INBTSaveLoad<NBTTa
     {
         synchronized(nbtInfo)
         {
+            valueCache.clear();
             List<String> keys = new ArrayList<>((Set<String>)nbtInfo.func_150296_c());
             for(String key : keys) nbtInfo.removeTag(key);
         }
@@ -106,11 +131,25 @@ public class PropertyContainer implements IPropertyContainer, INBTSaveLoad<NBTTa
 	{
 	    synchronized(nbtInfo)
         {
-            for(String key : (Set<String>)nbtInfo.func_150296_c()) nbtInfo.removeTag(key);
+            valueCache.clear();
+            List<String> keys = new ArrayList<>((Set<String>)nbtInfo.func_150296_c());
+            for(String key : keys) nbtInfo.removeTag(key);
             merge(nbtInfo, nbt);
         }
 	}
 	
+    // Drops every cached value stored under this key, including ones decoded by other type instances sharing it
+    private void invalidate(ResourceLocation res)
+    {
+        Iterator<IPropertyType<?>> iter = valueCache.keySet().iterator();
+        while(iter.hasNext()) if(res.equals(iter.next().getKey())) iter.remove();
+    }
+    
+    private static boolean isImmutable(Object value)
+    {
+        return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Enum;
+    }
+	
 	private NBTTagCompound getDomain(ResourceLocation res)
 	{
 		return nbtInfo.getCompoundTag(res.getResourceDomain());